@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import threeguys.docsdb.wire.WireClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends operations over the binary wire protocol. Requests of all runner threads are spread over a few
+ * connections, so they are pipelined rather than each waiting for a connection of its own.
+ */
+public class BinaryTarget implements Target {
+
+    private final String host;
+    private final int port;
+    private final List<WireClient> clients;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public BinaryTarget(String host, int port, int connections) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.clients = new ArrayList<>(connections);
+        try {
+            for (int i = 0; i < connections; i++) {
+                clients.add(new WireClient(host, port));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private WireClient client() {
+        return clients.get(Math.floorMod(next.getAndIncrement(), clients.size()));
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public byte [] get(String namespace, String key) throws IOException {
+        return await(client().get(namespace, key));
+    }
+
+    @Override
+    public void put(String namespace, String key, byte [] value) throws IOException {
+        await(client().put(namespace, key, value));
+    }
+
+    @Override
+    public void delete(String namespace, String key) throws IOException {
+        await(client().delete(namespace, key));
+    }
+
+    @Override
+    public void close() {
+        clients.forEach(WireClient::close);
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+
+}
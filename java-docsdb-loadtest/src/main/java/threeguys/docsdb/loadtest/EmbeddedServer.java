@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import threeguys.docsdb.Server;
+import threeguys.docsdb.replication.Checkpoints;
+import threeguys.docsdb.wire.WireServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Runs the server in this JVM on a random port against a throwaway database directory.
+ */
+public class EmbeddedServer implements AutoCloseable {
+
+    private final Path dir;
+    private final ConfigurableApplicationContext context;
+
+    public EmbeddedServer(Properties overrides) throws IOException {
+        this.dir = Files.createTempDirectory("docsdb-loadtest");
+
+        Properties properties = new Properties();
+        properties.setProperty("server.port", "0");
+        properties.setProperty("DOCSDB_PATH", dir.resolve("db").toString());
+        properties.putAll(overrides);
+
+        this.context = new SpringApplicationBuilder(Server.class)
+                .properties(properties)
+                .run();
+    }
+
+    public int getPort() {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public String getUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    /**
+     * Port of the binary protocol listener, which only runs when DOCSDB_WIRE_PORT is set.
+     */
+    public int getWirePort() {
+        return context.getBean(WireServer.class).getPort();
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        try {
+            Checkpoints.delete(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sends operations to the REST API. HttpURLConnection keeps connections alive between requests as long
+ * as the responses are read to the end.
+ */
+public class HttpTarget implements Target {
+
+    private final String baseUrl;
+
+    public HttpTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    private HttpURLConnection open(String method, String namespace, String key) throws IOException {
+        URL url = new URL(baseUrl + "/namespace/" + encode(namespace) + "/" + encode(key));
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        return conn;
+    }
+
+    private static String encode(String value) throws IOException {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8.name()).replace("+", "%20");
+    }
+
+    private static byte [] readResponse(HttpURLConnection conn) throws IOException {
+        int status = conn.getResponseCode();
+        InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte [] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) >= 0) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+
+        if (status >= 400) {
+            throw new IOException("HTTP " + status + " from " + conn.getURL());
+        }
+        return body.toByteArray();
+    }
+
+    /**
+     * The version the server reports on /version.
+     */
+    public String getVersion() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(baseUrl + "/version").openConnection();
+        return new ObjectMapper().readTree(readResponse(conn)).path("version").asText();
+    }
+
+    @Override
+    public byte [] get(String namespace, String key) throws IOException {
+        return readResponse(open("GET", namespace, key));
+    }
+
+    @Override
+    public void put(String namespace, String key, byte [] value) throws IOException {
+        HttpURLConnection conn = open("PUT", namespace, key);
+        conn.setDoOutput(true);
+        conn.setFixedLengthStreamingMode(value.length);
+        conn.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(value);
+        }
+        readResponse(conn);
+    }
+
+    @Override
+    public void delete(String namespace, String key) throws IOException {
+        readResponse(open("DELETE", namespace, key));
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Runs a workload against an embedded server (target=embedded) or a server that is already running
+ * (target=http://host:port, or host:port of the wire protocol listener with protocol=binary). Settings
+ * are given as key=value arguments, spec=file loads them from a properties file first. The report is
+ * printed to stdout as JSON.
+ */
+public class LoadTest {
+
+    static Properties parseArgs(String [] args) throws IOException {
+        Properties properties = new Properties();
+        Properties overrides = new Properties();
+
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("expected key=value, got " + arg);
+            }
+            overrides.setProperty(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+
+        String specFile = overrides.getProperty("spec");
+        if (specFile != null) {
+            try (InputStream in = new FileInputStream(specFile)) {
+                properties.load(in);
+            }
+            overrides.remove("spec");
+        }
+
+        properties.putAll(overrides);
+        return properties;
+    }
+
+    static Target connect(WorkloadSpec spec, EmbeddedServer server) throws IOException {
+        boolean binary = "binary".equals(spec.getProtocol());
+        if (server != null) {
+            return binary
+                    ? new BinaryTarget("localhost", server.getWirePort(), spec.getConnections())
+                    : new HttpTarget(server.getUrl());
+        } else if (!binary) {
+            return new HttpTarget(spec.getTarget());
+        }
+
+        String target = spec.getTarget();
+        int colon = target.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("binary targets are host:port, got " + target);
+        }
+        return new BinaryTarget(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)),
+                spec.getConnections());
+    }
+
+    static String targetVersion(WorkloadSpec spec, EmbeddedServer server) throws IOException {
+        if (!spec.getTargetVersion().isEmpty()) {
+            return spec.getTargetVersion();
+        } else if (server != null) {
+            return new HttpTarget(server.getUrl()).getVersion();
+        } else if (!"binary".equals(spec.getProtocol())) {
+            return new HttpTarget(spec.getTarget()).getVersion();
+        }
+        throw new IllegalArgumentException(WorkloadSpec.TARGET_VERSION + " is required for binary targets");
+    }
+
+    public static Report run(WorkloadSpec spec) throws IOException, InterruptedException {
+        EmbeddedServer server = null;
+        if ("embedded".equals(spec.getTarget())) {
+            Properties properties = spec.getServerProperties();
+            if ("binary".equals(spec.getProtocol())) {
+                properties.putIfAbsent("DOCSDB_WIRE_PORT", "0");
+            }
+            server = new EmbeddedServer(properties);
+        }
+
+        try (Target target = connect(spec, server)) {
+            String targetVersion = targetVersion(spec, server);
+            OpenLoopRunner runner = new OpenLoopRunner(spec, target);
+            if (spec.isPreload()) {
+                runner.preload(new WorkloadGenerator(spec));
+            }
+            return new Report(spec, targetVersion, runner.run(new WorkloadGenerator(spec)));
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    public static void main(String [] args) throws IOException, InterruptedException {
+        WorkloadSpec spec = new WorkloadSpec(parseArgs(args));
+        Report report = run(spec);
+        report.writeHistograms();
+        report.writeJson(System.out);
+        System.out.println();
+    }
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Issues operations on a fixed schedule, whether or not earlier operations have finished. Latency is
+ * measured from when an operation was supposed to start rather than when a worker got to it, so a server
+ * that stalls is charged for the requests that queued up behind the stall (no coordinated omission).
+ */
+public class OpenLoopRunner {
+
+    public static class Result {
+
+        final Map<Operation.Type, Histogram> latency = new EnumMap<>(Operation.Type.class);
+        final Map<Operation.Type, Histogram> service = new EnumMap<>(Operation.Type.class);
+        final Map<Operation.Type, AtomicLong> errors = new EnumMap<>(Operation.Type.class);
+        long elapsedNanos;
+
+        Result() {
+            for (Operation.Type type : Operation.Type.values()) {
+                latency.put(type, new ConcurrentHistogram(3));
+                service.put(type, new ConcurrentHistogram(3));
+                errors.put(type, new AtomicLong());
+            }
+        }
+
+        public Histogram getLatency(Operation.Type type) {
+            return latency.get(type);
+        }
+
+        public Histogram getServiceTime(Operation.Type type) {
+            return service.get(type);
+        }
+
+        public long getErrors(Operation.Type type) {
+            return errors.get(type).get();
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+    }
+
+    private final WorkloadSpec spec;
+    private final Target target;
+
+    public OpenLoopRunner(WorkloadSpec spec, Target target) {
+        this.spec = spec;
+        this.target = target;
+    }
+
+    /**
+     * Writes every key of every namespace once so that reads find something, as fast as the server allows.
+     */
+    public void preload(WorkloadGenerator generator) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(spec.getThreads());
+        Semaphore inFlight = new Semaphore(spec.getThreads() * 2);
+        AtomicLong failures = new AtomicLong();
+
+        for (int ns = 0; ns < spec.getNamespaces(); ns++) {
+            for (long k = 0; k < spec.getKeys(); k++) {
+                String namespace = WorkloadGenerator.namespace(ns);
+                String key = WorkloadGenerator.key(k);
+                byte [] value = generator.nextValue();
+
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        target.put(namespace, key, value);
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.DAYS);
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " preload writes failed");
+        }
+    }
+
+    public Result run(WorkloadGenerator generator) throws InterruptedException {
+        Result result = new Result();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(spec.getThreads(), spec.getThreads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+        long intervalNanos = (long) (1_000_000_000L / spec.getRate());
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(spec.getWarmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(spec.getDurationSeconds());
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Operation op = generator.next();
+            boolean measured = intended >= measureFrom;
+            workers.execute(() -> {
+                long started = System.nanoTime();
+                try {
+                    target.execute(op);
+                    long finished = System.nanoTime();
+                    if (measured) {
+                        result.latency.get(op.getType()).recordValue(finished - intended);
+                        result.service.get(op.getType()).recordValue(finished - started);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    if (measured) {
+                        result.errors.get(op.getType()).incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        result.elapsedNanos = System.nanoTime() - measureFrom;
+        return result;
+    }
+
+}
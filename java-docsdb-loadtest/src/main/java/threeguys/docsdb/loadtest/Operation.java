@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+public class Operation {
+
+    public enum Type {
+        GET, PUT, DELETE
+    }
+
+    private final Type type;
+    private final String namespace;
+    private final String key;
+    private final byte [] value;
+
+    public Operation(Type type, String namespace, String key, byte [] value) {
+        this.type = type;
+        this.namespace = namespace;
+        this.key = key;
+        this.value = value;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public byte [] getValue() {
+        return value;
+    }
+
+}
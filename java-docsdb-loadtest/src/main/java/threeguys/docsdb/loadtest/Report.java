@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summarises a run as JSON. The spec (including the seed) and the version of the server under test are part
+ * of the report so that results from different versions can be lined up. Full latency distributions can also be written
+ * out in HdrHistogram's .hgrm format, which existing plotting tools understand.
+ */
+public class Report {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+    private static final double [] PERCENTILES = { 50.0, 90.0, 99.0, 99.9, 99.99 };
+
+    private final WorkloadSpec spec;
+    private final String targetVersion;
+    private final OpenLoopRunner.Result result;
+
+    public Report(WorkloadSpec spec, String targetVersion, OpenLoopRunner.Result result) {
+        this.spec = spec;
+        this.targetVersion = targetVersion;
+        this.result = result;
+    }
+
+    private static Map<String, Object> summarize(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("meanMicros", histogram.getMean() / NANOS_PER_MICRO);
+        for (double p : PERCENTILES) {
+            summary.put("p" + p + "Micros", histogram.getValueAtPercentile(p) / NANOS_PER_MICRO);
+        }
+        summary.put("maxMicros", histogram.getMaxValue() / NANOS_PER_MICRO);
+        return summary;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        String version = Report.class.getPackage().getImplementationVersion();
+        report.put("version", targetVersion);
+        report.put("loadtestVersion", version == null ? "dev" : version);
+        report.put("spec", spec.toMap());
+
+        long total = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation.Type type : Operation.Type.values()) {
+            Histogram latency = result.getLatency(type);
+            total += latency.getTotalCount();
+
+            Map<String, Object> op = new LinkedHashMap<>();
+            op.put("errors", result.getErrors(type));
+            op.put("latency", summarize(latency));
+            op.put("serviceTime", summarize(result.getServiceTime(type)));
+            operations.put(type.name().toLowerCase(), op);
+        }
+
+        report.put("intendedRate", spec.getRate());
+        report.put("achievedRate", total / (result.getElapsedNanos() / 1e9));
+        report.put("operations", operations);
+        return report;
+    }
+
+    public void writeJson(OutputStream out) throws IOException {
+        new ObjectMapper()
+                .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false)
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(out, toMap());
+    }
+
+    public void writeHistograms(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (Operation.Type type : Operation.Type.values()) {
+            String name = type.name().toLowerCase();
+            try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(name + ".hgrm")))) {
+                result.getLatency(type).outputPercentileDistribution(out, NANOS_PER_MICRO);
+            }
+        }
+    }
+
+    public void writeHistograms() throws IOException {
+        if (!spec.getHistogramDir().isEmpty()) {
+            writeHistograms(Paths.get(spec.getHistogramDir()));
+        }
+    }
+
+}
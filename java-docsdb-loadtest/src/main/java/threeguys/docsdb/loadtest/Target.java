@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import java.io.IOException;
+
+/**
+ * Something operations can be sent to. Implementations must be safe to call from many threads.
+ */
+public interface Target extends AutoCloseable {
+
+    byte [] get(String namespace, String key) throws IOException;
+    void put(String namespace, String key, byte [] value) throws IOException;
+    void delete(String namespace, String key) throws IOException;
+
+    void close();
+
+    default void execute(Operation op) throws IOException {
+        switch (op.getType()) {
+            case GET:
+                get(op.getNamespace(), op.getKey());
+                break;
+            case PUT:
+                put(op.getNamespace(), op.getKey(), op.getValue());
+                break;
+            case DELETE:
+                delete(op.getNamespace(), op.getKey());
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Produces JSON documents whose sizes follow a fixed, uniform or log-normal distribution.
+ */
+public class ValueGenerator {
+
+    private static final byte [] PREFIX = "{\"data\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte [] SUFFIX = "\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final String distribution;
+    private final int size;
+    private final int min;
+    private final int max;
+    private final double sigma;
+
+    public ValueGenerator(String distribution, int size, int min, int max, double sigma) {
+        if (!Arrays.asList("fixed", "uniform", "lognormal").contains(distribution)) {
+            throw new IllegalArgumentException("unknown value distribution " + distribution);
+        }
+        this.distribution = distribution;
+        this.size = size;
+        this.min = Math.max(min, PREFIX.length + SUFFIX.length);
+        this.max = Math.max(max, this.min);
+        this.sigma = sigma;
+    }
+
+    public ValueGenerator(WorkloadSpec spec) {
+        this(spec.getValueDistribution(), spec.getValueSize(), spec.getValueMin(), spec.getValueMax(),
+                spec.getValueSigma());
+    }
+
+    public int nextSize(Random random) {
+        double next;
+        switch (distribution) {
+            case "uniform":
+                next = min + random.nextInt(max - min + 1);
+                break;
+            case "lognormal":
+                // size is the median
+                next = Math.exp(Math.log(size) + sigma * random.nextGaussian());
+                break;
+            default:
+                next = size;
+        }
+        return (int) Math.max(min, Math.min(max, next));
+    }
+
+    public byte [] next(Random random) {
+        byte [] value = new byte[nextSize(random)];
+        System.arraycopy(PREFIX, 0, value, 0, PREFIX.length);
+        for (int i = PREFIX.length; i < value.length - SUFFIX.length; i++) {
+            value[i] = (byte) ('a' + random.nextInt(26));
+        }
+        System.arraycopy(SUFFIX, 0, value, value.length - SUFFIX.length, SUFFIX.length);
+        return value;
+    }
+
+}
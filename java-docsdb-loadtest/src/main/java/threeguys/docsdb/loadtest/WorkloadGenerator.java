@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import java.util.Random;
+
+/**
+ * Turns a spec into a deterministic sequence of operations. Not thread safe, one thread draws operations
+ * so that the sequence only depends on the seed.
+ */
+public class WorkloadGenerator {
+
+    private final WorkloadSpec spec;
+    private final Random random;
+    private final ZipfianGenerator namespaces;
+    private final ZipfianGenerator keys;
+    private final ValueGenerator values;
+
+    public WorkloadGenerator(WorkloadSpec spec) {
+        this.spec = spec;
+        this.random = new Random(spec.getSeed());
+        this.namespaces = new ZipfianGenerator(spec.getNamespaces(), spec.getNamespaceTheta());
+        this.keys = new ZipfianGenerator(spec.getKeys(), spec.getKeyTheta());
+        this.values = new ValueGenerator(spec);
+    }
+
+    public static String namespace(long index) {
+        return String.format("loadtest-%04d", index);
+    }
+
+    public static String key(long index) {
+        return String.format("key-%010d", index);
+    }
+
+    public Operation next() {
+        String namespace = namespace(namespaces.next(random));
+        String key = key(keys.next(random));
+
+        double choice = random.nextDouble();
+        if (choice < spec.getReadFraction()) {
+            return new Operation(Operation.Type.GET, namespace, key, null);
+        } else if (choice < spec.getReadFraction() + spec.getWriteFraction()) {
+            return new Operation(Operation.Type.PUT, namespace, key, values.next(random));
+        }
+        return new Operation(Operation.Type.DELETE, namespace, key, null);
+    }
+
+    /**
+     * A value for preloading, drawn from the same size distribution.
+     */
+    public byte [] nextValue() {
+        return values.next(random);
+    }
+
+}
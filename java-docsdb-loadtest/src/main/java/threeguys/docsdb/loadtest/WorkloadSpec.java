@@ -0,0 +1,225 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Describes a workload. Everything has a default so that runs of the same spec (including the seed)
+ * issue the same sequence of operations and can be compared between versions.
+ */
+public class WorkloadSpec {
+
+    public static final String TARGET = "target";
+    public static final String TARGET_VERSION = "target.version";
+    public static final String PROTOCOL = "protocol";
+    public static final String CONNECTIONS = "connections";
+    public static final String SEED = "seed";
+    public static final String RATE = "rate";
+    public static final String DURATION_SECONDS = "duration.seconds";
+    public static final String WARMUP_SECONDS = "warmup.seconds";
+    public static final String THREADS = "threads";
+    public static final String READ_FRACTION = "mix.read";
+    public static final String WRITE_FRACTION = "mix.write";
+    public static final String DELETE_FRACTION = "mix.delete";
+    public static final String NAMESPACES = "namespaces";
+    public static final String NAMESPACE_THETA = "namespaces.theta";
+    public static final String KEYS = "keys";
+    public static final String KEY_THETA = "keys.theta";
+    public static final String PRELOAD = "preload";
+    public static final String VALUE_DISTRIBUTION = "value.distribution";
+    public static final String VALUE_SIZE = "value.size";
+    public static final String VALUE_MIN = "value.min";
+    public static final String VALUE_MAX = "value.max";
+    public static final String VALUE_SIGMA = "value.sigma";
+    public static final String HISTOGRAM_DIR = "histogram.dir";
+
+    private static final Properties DEFAULTS = new Properties();
+
+    static {
+        DEFAULTS.setProperty(TARGET, "embedded");
+        DEFAULTS.setProperty(TARGET_VERSION, "");
+        DEFAULTS.setProperty(PROTOCOL, "http");
+        DEFAULTS.setProperty(CONNECTIONS, "4");
+        DEFAULTS.setProperty(SEED, "42");
+        DEFAULTS.setProperty(RATE, "1000");
+        DEFAULTS.setProperty(DURATION_SECONDS, "60");
+        DEFAULTS.setProperty(WARMUP_SECONDS, "10");
+        DEFAULTS.setProperty(THREADS, "64");
+        DEFAULTS.setProperty(READ_FRACTION, "0.8");
+        DEFAULTS.setProperty(WRITE_FRACTION, "0.18");
+        DEFAULTS.setProperty(DELETE_FRACTION, "0.02");
+        DEFAULTS.setProperty(NAMESPACES, "16");
+        DEFAULTS.setProperty(NAMESPACE_THETA, "0.99");
+        DEFAULTS.setProperty(KEYS, "100000");
+        DEFAULTS.setProperty(KEY_THETA, "0.99");
+        DEFAULTS.setProperty(PRELOAD, "true");
+        DEFAULTS.setProperty(VALUE_DISTRIBUTION, "lognormal");
+        DEFAULTS.setProperty(VALUE_SIZE, "1024");
+        DEFAULTS.setProperty(VALUE_MIN, "16");
+        DEFAULTS.setProperty(VALUE_MAX, "65536");
+        DEFAULTS.setProperty(VALUE_SIGMA, "1.0");
+        DEFAULTS.setProperty(HISTOGRAM_DIR, "");
+    }
+
+    private final Properties properties;
+
+    public WorkloadSpec(Properties overrides) {
+        this.properties = new Properties();
+        this.properties.putAll(DEFAULTS);
+        this.properties.putAll(overrides);
+
+        double total = getReadFraction() + getWriteFraction() + getDeleteFraction();
+        if (Math.abs(total - 1.0) > 1e-6) {
+            throw new IllegalArgumentException("operation mix must add up to 1.0, got " + total);
+        }
+        if (getRate() <= 0 || getNamespaces() <= 0 || getKeys() <= 0 || getThreads() <= 0) {
+            throw new IllegalArgumentException("rate, namespaces, keys and threads must be positive");
+        }
+        if (!"http".equals(getProtocol()) && !"binary".equals(getProtocol())) {
+            throw new IllegalArgumentException("protocol must be http or binary, got " + getProtocol());
+        }
+        if (getConnections() <= 0) {
+            throw new IllegalArgumentException("connections must be positive");
+        }
+    }
+
+    private String get(String key) {
+        return properties.getProperty(key).trim();
+    }
+
+    public String getTarget() {
+        return get(TARGET);
+    }
+
+    /**
+     * Version (or commit) of the server under test, recorded in the report. Asked from the server over
+     * REST when empty, which the binary protocol can't do for a server that is already running.
+     */
+    public String getTargetVersion() {
+        return get(TARGET_VERSION);
+    }
+
+    /**
+     * http for the REST API, binary for the wire protocol (target is then host:port of its listener).
+     */
+    public String getProtocol() {
+        return get(PROTOCOL);
+    }
+
+    /**
+     * Connections the binary protocol pipelines requests over.
+     */
+    public int getConnections() {
+        return Integer.parseInt(get(CONNECTIONS));
+    }
+
+    public long getSeed() {
+        return Long.parseLong(get(SEED));
+    }
+
+    public double getRate() {
+        return Double.parseDouble(get(RATE));
+    }
+
+    public int getDurationSeconds() {
+        return Integer.parseInt(get(DURATION_SECONDS));
+    }
+
+    public int getWarmupSeconds() {
+        return Integer.parseInt(get(WARMUP_SECONDS));
+    }
+
+    public int getThreads() {
+        return Integer.parseInt(get(THREADS));
+    }
+
+    public double getReadFraction() {
+        return Double.parseDouble(get(READ_FRACTION));
+    }
+
+    public double getWriteFraction() {
+        return Double.parseDouble(get(WRITE_FRACTION));
+    }
+
+    public double getDeleteFraction() {
+        return Double.parseDouble(get(DELETE_FRACTION));
+    }
+
+    public int getNamespaces() {
+        return Integer.parseInt(get(NAMESPACES));
+    }
+
+    public double getNamespaceTheta() {
+        return Double.parseDouble(get(NAMESPACE_THETA));
+    }
+
+    public long getKeys() {
+        return Long.parseLong(get(KEYS));
+    }
+
+    public double getKeyTheta() {
+        return Double.parseDouble(get(KEY_THETA));
+    }
+
+    public boolean isPreload() {
+        return Boolean.parseBoolean(get(PRELOAD));
+    }
+
+    public String getValueDistribution() {
+        return get(VALUE_DISTRIBUTION);
+    }
+
+    public int getValueSize() {
+        return Integer.parseInt(get(VALUE_SIZE));
+    }
+
+    public int getValueMin() {
+        return Integer.parseInt(get(VALUE_MIN));
+    }
+
+    public int getValueMax() {
+        return Integer.parseInt(get(VALUE_MAX));
+    }
+
+    public double getValueSigma() {
+        return Double.parseDouble(get(VALUE_SIGMA));
+    }
+
+    public String getHistogramDir() {
+        return get(HISTOGRAM_DIR);
+    }
+
+    /**
+     * Settings for an embedded server, any DOCSDB_* property is passed through.
+     */
+    public Properties getServerProperties() {
+        Properties server = new Properties();
+        properties.stringPropertyNames().stream()
+                .filter(k -> k.startsWith("DOCSDB_"))
+                .forEach(k -> server.setProperty(k, properties.getProperty(k)));
+        return server;
+    }
+
+    public Map<String, String> toMap() {
+        Map<String, String> map = new TreeMap<>();
+        properties.stringPropertyNames().forEach(k -> map.put(k, properties.getProperty(k)));
+        return map;
+    }
+
+}
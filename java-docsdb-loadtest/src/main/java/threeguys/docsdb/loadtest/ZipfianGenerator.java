@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import java.util.Random;
+
+/**
+ * Draws items 0..n-1 with Zipfian popularity (Gray et al, "Quickly Generating Billion-Record Synthetic
+ * Databases", as used by YCSB). The ranks are then scattered over the item space with a fixed
+ * permutation so that the popular items are not all next to each other in key order.
+ */
+public class ZipfianGenerator {
+
+    private final long items;
+    private final double theta;
+    private final double zetan;
+    private final double alpha;
+    private final double eta;
+    private final long multiplier;
+
+    public ZipfianGenerator(long items, double theta) {
+        if (items <= 0) {
+            throw new IllegalArgumentException("items must be positive");
+        }
+        if (theta < 0 || theta == 1.0) {
+            throw new IllegalArgumentException("theta must be >= 0 and not 1");
+        }
+
+        this.items = items;
+        this.theta = theta;
+        this.zetan = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(Math.min(2, items), theta) / zetan);
+        this.multiplier = coprimeMultiplier(items);
+    }
+
+    static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static long coprimeMultiplier(long n) {
+        long m = 2654435761L % Math.max(1, n);
+        while (n > 1 && (m < 1 || gcd(m, n) != 1)) {
+            m++;
+        }
+        return Math.max(1, m);
+    }
+
+    /**
+     * The rank of the next item, 0 being the most popular.
+     */
+    public long nextRank(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetan;
+
+        if (uz < 1.0) {
+            return 0;
+        } else if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return Math.min(1, items - 1);
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    public long next(Random random) {
+        return scatter(nextRank(random));
+    }
+
+    long scatter(long rank) {
+        return Math.floorMod(rank * multiplier, items);
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import threeguys.docsdb.VersionController;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLoadTest {
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> map, String key) {
+        return (Map<String, Object>) map.get(key);
+    }
+
+    // Operations run across every type, checking that none of them failed
+    private static long countWithoutErrors(Map<String, Object> summary) {
+        long total = 0;
+        for (Operation.Type type : Operation.Type.values()) {
+            Map<String, Object> op = child(child(summary, "operations"), type.name().toLowerCase());
+            assertEquals(0L, op.get("errors"));
+            total += (Long) child(op, "latency").get("count");
+        }
+        return total;
+    }
+
+    // Tests that start a server are run with -Pintegration
+    @Test
+    @Tag("integration")
+    public void embeddedRun(@TempDir Path tempDir) throws Exception {
+        WorkloadSpec spec = new WorkloadSpec(LoadTest.parseArgs(new String[] {
+                "rate=200", "duration.seconds=1", "warmup.seconds=0", "threads=4",
+                "namespaces=2", "keys=50", "value.size=64",
+                "histogram.dir=" + tempDir.resolve("histograms")
+        }));
+
+        Report report = LoadTest.run(spec);
+        report.writeHistograms();
+
+        Map<String, Object> summary = report.toMap();
+        assertEquals(200, countWithoutErrors(summary));
+
+        assertTrue(Files.isRegularFile(tempDir.resolve("histograms").resolve("get.hgrm")));
+        assertEquals(new VersionController().getVersion().getVersion(), summary.get("version"));
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        report.writeJson(json);
+        assertTrue(json.toString("UTF-8").contains("\"achievedRate\""));
+    }
+
+    @Test
+    @Tag("integration")
+    public void embeddedBinaryRun() throws Exception {
+        WorkloadSpec spec = new WorkloadSpec(LoadTest.parseArgs(new String[] {
+                "protocol=binary", "connections=2",
+                "rate=200", "duration.seconds=1", "warmup.seconds=0", "threads=4",
+                "namespaces=2", "keys=50", "value.size=64"
+        }));
+
+        Map<String, Object> summary = LoadTest.run(spec).toMap();
+        assertEquals(200, countWithoutErrors(summary));
+    }
+
+    @Test
+    public void binaryTargetNeedsVersion() throws Exception {
+        WorkloadSpec spec = new WorkloadSpec(LoadTest.parseArgs(new String[] {
+                "protocol=binary", "target=localhost:1234"
+        }));
+        assertThrows(IllegalArgumentException.class, () -> LoadTest.targetVersion(spec, null));
+
+        WorkloadSpec given = new WorkloadSpec(LoadTest.parseArgs(new String[] {
+                "protocol=binary", "target=localhost:1234", "target.version=abc123"
+        }));
+        assertEquals("abc123", LoadTest.targetVersion(given, null));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestWorkloadGenerator {
+
+    private static WorkloadSpec spec(String... pairs) {
+        Properties properties = new Properties();
+        for (int i = 0; i < pairs.length; i += 2) {
+            properties.setProperty(pairs[i], pairs[i + 1]);
+        }
+        return new WorkloadSpec(properties);
+    }
+
+    @Test
+    public void followsTheMix() {
+        WorkloadGenerator generator = new WorkloadGenerator(spec(
+                WorkloadSpec.READ_FRACTION, "0.5",
+                WorkloadSpec.WRITE_FRACTION, "0.3",
+                WorkloadSpec.DELETE_FRACTION, "0.2",
+                WorkloadSpec.VALUE_DISTRIBUTION, "uniform",
+                WorkloadSpec.VALUE_MIN, "100",
+                WorkloadSpec.VALUE_MAX, "200"));
+
+        Map<Operation.Type, Integer> counts = new EnumMap<>(Operation.Type.class);
+        for (int i = 0; i < 10000; i++) {
+            Operation op = generator.next();
+            counts.merge(op.getType(), 1, Integer::sum);
+            if (op.getType() == Operation.Type.PUT) {
+                assertTrue(op.getValue().length >= 100 && op.getValue().length <= 200);
+                assertEquals('{', op.getValue()[0]);
+                assertEquals('}', op.getValue()[op.getValue().length - 1]);
+            } else {
+                assertNull(op.getValue());
+            }
+        }
+
+        assertEquals(5000, counts.get(Operation.Type.GET), 300);
+        assertEquals(3000, counts.get(Operation.Type.PUT), 300);
+        assertEquals(2000, counts.get(Operation.Type.DELETE), 300);
+    }
+
+    @Test
+    public void sameSeedSameOperations() {
+        WorkloadGenerator a = new WorkloadGenerator(spec(WorkloadSpec.SEED, "3"));
+        WorkloadGenerator b = new WorkloadGenerator(spec(WorkloadSpec.SEED, "3"));
+        for (int i = 0; i < 1000; i++) {
+            Operation opA = a.next();
+            Operation opB = b.next();
+            assertEquals(opA.getType(), opB.getType());
+            assertEquals(opA.getNamespace(), opB.getNamespace());
+            assertEquals(opA.getKey(), opB.getKey());
+            assertArrayEquals(opA.getValue(), opB.getValue());
+        }
+    }
+
+    @Test
+    public void invalidMix() {
+        assertThrows(IllegalArgumentException.class, () -> spec(WorkloadSpec.READ_FRACTION, "0.9"));
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestZipfianGenerator {
+
+    @Test
+    public void skewedTowardsLowRanks() {
+        ZipfianGenerator zipf = new ZipfianGenerator(1000, 0.99);
+        Random random = new Random(1);
+
+        int [] counts = new int[1000];
+        for (int i = 0; i < 100000; i++) {
+            long rank = zipf.nextRank(random);
+            assertTrue(rank >= 0 && rank < 1000);
+            counts[(int) rank]++;
+        }
+
+        assertTrue(counts[0] > counts[1]);
+        assertTrue(counts[1] > counts[10]);
+        assertTrue(counts[0] > 100000 / 20, "rank 0 should get a large share, got " + counts[0]);
+    }
+
+    @Test
+    public void uniformWithZeroTheta() {
+        ZipfianGenerator zipf = new ZipfianGenerator(10, 0.0);
+        Random random = new Random(1);
+
+        int [] counts = new int[10];
+        for (int i = 0; i < 100000; i++) {
+            counts[(int) zipf.nextRank(random)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 9000 && count < 11000, "expected roughly uniform, got " + count);
+        }
+    }
+
+    @Test
+    public void scatterIsAPermutation() {
+        for (long items : new long[] { 1, 2, 7, 100, 1024, 12345 }) {
+            ZipfianGenerator zipf = new ZipfianGenerator(items, 0.5);
+            Set<Long> seen = new HashSet<>();
+            for (long rank = 0; rank < items; rank++) {
+                long item = zipf.scatter(rank);
+                assertTrue(item >= 0 && item < items);
+                seen.add(item);
+            }
+            assertEquals(items, seen.size());
+        }
+    }
+
+    @Test
+    public void deterministic() {
+        ZipfianGenerator zipf = new ZipfianGenerator(5000, 0.99);
+        Random a = new Random(7);
+        Random b = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(zipf.next(a), zipf.next(b));
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of the key operations of {@link Database}. Futures fail with the
+ * {@link DatabaseException} the blocking call would have thrown. Operations on the same key complete in
+ * the order they were submitted.
+ */
+public interface AsyncDatabase extends AutoCloseable {
+
+    CompletableFuture<byte []> get(String table, String key);
+    CompletableFuture<Void> put(String table, String key, byte [] data);
+
+    /**
+     * Puts the remaining bytes of data, which must be left alone until the future completes.
+     */
+    CompletableFuture<Void> put(String table, String key, ByteBuffer data);
+    CompletableFuture<Void> delete(String table, String key);
+    CompletableFuture<Map<String, byte []>> multiGet(String table, List<String> keys);
+
+    void close();
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An ordered list of puts and deletes that are written together.
+ */
+public class Batch {
+
+    public static class Entry {
+
+        private final String table;
+        private final String key;
+        private final byte [] value;
+
+        Entry(String table, String key, byte [] value) {
+            this.table = table;
+            this.key = key;
+            this.value = value;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The value to put, null for a delete.
+         */
+        public byte [] getValue() {
+            return value;
+        }
+
+        public boolean isDelete() {
+            return value == null;
+        }
+
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public Batch put(String table, String key, byte [] value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value can not be null");
+        }
+        entries.add(new Entry(table, key, value));
+        return this;
+    }
+
+    public Batch delete(String table, String key) {
+        entries.add(new Entry(table, key, null));
+        return this;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+}
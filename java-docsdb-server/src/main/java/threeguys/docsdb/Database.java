@@ -17,7 +17,11 @@ package threeguys.docsdb;
 
 import threeguys.docsdb.api.Namespace;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface Database extends AutoCloseable {
@@ -30,6 +34,42 @@ public interface Database extends AutoCloseable {
     Void put(String table, String key, byte [] data) throws DatabaseException;
     Void delete(String table, String key) throws DatabaseException;
 
+    /**
+     * Stores the remaining bytes of data. Implementations that can write straight from a direct buffer
+     * override this, the default copies the value onto the heap first.
+     */
+    default Void put(String table, String key, ByteBuffer data) throws DatabaseException {
+        byte [] value = new byte[data.remaining()];
+        data.get(value);
+        return put(table, key, value);
+    }
+
+    /**
+     * Applies the puts and deletes of a batch in order.
+     */
+    Void write(Batch batch) throws DatabaseException;
+
+    /**
+     * Looks up several keys at once. Keys that are not present are left out of the result, the
+     * remaining entries are returned in the order they were requested.
+     */
+    Map<String, byte []> multiGet(String table, List<String> keys) throws DatabaseException;
+
+    /**
+     * Iterates over the keys of a table in ascending (bytewise) order, starting at startKey (inclusive)
+     * and stopping before endKey (exclusive). Either bound may be null to leave that end open.
+     */
+    DatabaseIterator scan(String table, String startKey, String endKey) throws DatabaseException;
+
+    /**
+     * Keys that divide a table into at most maxParts ranges holding roughly the same amount of data, in
+     * ascending order, so that the ranges can be scanned in parallel. Empty when there's no basis for
+     * splitting the table.
+     */
+    default List<String> getSplitKeys(String table, int maxParts) throws DatabaseException {
+        return Collections.emptyList();
+    }
+
     static byte [] bytes(String data) {
         return data.getBytes(StandardCharsets.UTF_8);
     }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import java.util.Comparator;
+
+/**
+ * Keys are stored as their UTF-8 bytes and ordered bytewise (unsigned), which is the ordering
+ * RocksDB uses by default. Anything that merges or splits key ranges has to agree with it.
+ */
+public final class Keys {
+
+    public static final Comparator<byte []> BYTEWISE = Keys::compare;
+
+    private Keys() {
+    }
+
+    /**
+     * How many bytes key takes up once encoded, without encoding it. Quotas are charged this rather than
+     * the number of UTF-16 chars.
+     */
+    public static int utf8Length(String key) {
+        int length = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (!Character.isSurrogate(c)) {
+                length += 3;
+            } else if (Character.isHighSurrogate(c) && i + 1 < key.length() && Character.isLowSurrogate(key.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // Unpaired surrogates are replaced by '?'
+                length += 1;
+            }
+        }
+        return length;
+    }
+
+    public static int compare(byte [] a, byte [] b) {
+        int len = Math.min(a.length, b.length);
+        for (int i = 0; i < len; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+}
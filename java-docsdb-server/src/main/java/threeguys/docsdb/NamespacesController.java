@@ -17,10 +17,18 @@ package threeguys.docsdb;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import threeguys.docsdb.admission.AdmissionControl;
 import threeguys.docsdb.api.Namespace;
 import threeguys.docsdb.api.Result;
+import threeguys.docsdb.ingest.DocumentReader;
+import threeguys.docsdb.trace.Trace;
+import threeguys.docsdb.trace.Tracer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 public class NamespacesController {
@@ -28,9 +36,23 @@ public class NamespacesController {
     public static final Result OK = new Result("ok");
 
     private final Database db;
+    private final AsyncDatabase asyncDb;
+    private final AdmissionControl admission;
+    private final DocumentReader documents;
+    private final Tracer tracer;
 
-    public NamespacesController(@Autowired Database db) {
+    @Autowired
+    public NamespacesController(Database db, AsyncDatabase asyncDb, AdmissionControl admission, DocumentReader documents,
+                                Tracer tracer) {
         this.db = db;
+        this.asyncDb = asyncDb;
+        this.admission = admission;
+        this.documents = documents;
+        this.tracer = tracer.isEnabled() ? tracer : null;
+    }
+
+    private Trace currentTrace() {
+        return tracer == null ? null : tracer.current();
     }
 
     @RequestMapping(path = "/namespace", method = RequestMethod.GET, produces = "application/json")
@@ -44,20 +66,71 @@ public class NamespacesController {
     }
 
     @RequestMapping(path = "/namespace/{namespace}/{key}", method = RequestMethod.GET, produces = "application/json")
-    public byte [] getKey(@PathVariable("namespace") String namespace, @PathVariable("key") String key) throws DatabaseException {
-        return db.get(namespace, key);
+    public CompletableFuture<byte []> getKey(@PathVariable("namespace") String namespace, @PathVariable("key") String key) throws DatabaseException {
+        Trace trace = currentTrace();
+        long start = trace == null ? 0 : System.nanoTime();
+        admission.admitRead(namespace);
+        long storageStart = trace == null ? 0 : trace.lap("admission", start);
+
+        return asyncDb.get(namespace, key).thenApply(value -> {
+            if (trace != null) {
+                trace.lap("storage", storageStart);
+            }
+            if (value != null) {
+                admission.charge(namespace, value.length);
+            }
+            return value;
+        });
     }
 
     @RequestMapping(path = "/namespace/{namespace}/{key}", method = RequestMethod.PUT, produces = "application/json", consumes = "application/json")
-    public Result putKey(@PathVariable("namespace") String namespace, @PathVariable("key") String key, @RequestBody byte [] body) throws DatabaseException {
-        db.put(namespace, key, body);
-        return OK;
+    public CompletableFuture<Result> putKey(@PathVariable("namespace") String namespace, @PathVariable("key") String key,
+                                            InputStream body, @RequestHeader(value = "Content-Length", required = false) Long contentLength) throws DatabaseException, IOException {
+        Trace trace = currentTrace();
+        long start = trace == null ? 0 : System.nanoTime();
+        long declared = contentLength == null ? -1 : contentLength;
+        admission.admitWrite(namespace, key, Keys.utf8Length(key) + Math.max(0, declared));
+        if (trace != null) {
+            start = trace.lap("admission", start);
+        }
+
+        // The body is streamed straight into a direct buffer, which goes through the storage threads like any
+        // other write so that it is applied in order with the other operations on the key
+        ByteBuffer document = documents.read(body, declared);
+        long storageStart = trace == null ? 0 : trace.lap("body", start);
+
+        CompletableFuture<Void> stored;
+        try {
+            if (declared < 0) {
+                admission.charge(namespace, document.remaining());
+            }
+            stored = asyncDb.put(namespace, key, document);
+        } catch (RuntimeException e) {
+            documents.release(document);
+            throw e;
+        }
+
+        return stored.whenComplete((v, e) -> {
+            documents.release(document);
+            if (trace != null) {
+                trace.lap("storage", storageStart);
+            }
+        }).thenApply(v -> OK);
     }
 
     @RequestMapping(path = "/namespace/{namespace}/{key}", method = RequestMethod.DELETE)
-    public Result deleteKey(@PathVariable("namespace") String namespace, @PathVariable("key") String key) throws DatabaseException {
-        db.delete(namespace, key);
-        return OK;
+    public CompletableFuture<Result> deleteKey(@PathVariable("namespace") String namespace, @PathVariable("key") String key) throws DatabaseException {
+        Trace trace = currentTrace();
+        long start = trace == null ? 0 : System.nanoTime();
+        admission.admitWrite(namespace, key, Keys.utf8Length(key));
+        long storageStart = trace == null ? 0 : trace.lap("admission", start);
+
+        return asyncDb.delete(namespace, key).thenApply(v -> {
+            if (trace != null) {
+                trace.lap("storage", storageStart);
+            }
+            return OK;
+        });
     }
 
 }
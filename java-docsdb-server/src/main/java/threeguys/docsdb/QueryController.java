@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import threeguys.docsdb.admission.AdmissionControl;
+import threeguys.docsdb.api.AggregateResult;
+import threeguys.docsdb.api.Query;
+import threeguys.docsdb.query.QueryEngine;
+
+import java.io.IOException;
+
+@RestController
+public class QueryController {
+
+    private final QueryEngine engine;
+    private final AdmissionControl admission;
+
+    @Autowired
+    public QueryController(QueryEngine engine, AdmissionControl admission) {
+        this.engine = engine;
+        this.admission = admission;
+    }
+
+    @RequestMapping(path = "/query/{namespace}", method = RequestMethod.POST, produces = "application/x-ndjson", consumes = "application/json")
+    public StreamingResponseBody query(@PathVariable("namespace") String namespace, @RequestBody Query query) throws DatabaseException {
+        admission.admitRead(namespace);
+        engine.validate(query);
+
+        return out -> {
+            try {
+                admission.charge(namespace, engine.stream(namespace, query, out).getScannedBytes());
+            } catch (DatabaseException e) {
+                // The response has already started, all that's left is to cut it short
+                throw new IOException("query failed", e);
+            }
+        };
+    }
+
+    @RequestMapping(path = "/query/{namespace}/aggregate", method = RequestMethod.POST, produces = "application/json", consumes = "application/json")
+    public AggregateResult aggregate(@PathVariable("namespace") String namespace, @RequestBody Query query) throws DatabaseException {
+        admission.admitRead(namespace);
+        AggregateResult result = engine.aggregate(namespace, query);
+        admission.charge(namespace, result.getScannedBytes());
+        return result;
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import threeguys.docsdb.admission.AdmissionControl;
+import threeguys.docsdb.api.NamespaceQuota;
+import threeguys.docsdb.api.Result;
+
+@RestController
+public class QuotasController {
+
+    private final AdmissionControl admission;
+
+    public QuotasController(@Autowired AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    @RequestMapping(path = "/quota/{namespace}", method = RequestMethod.GET, produces = "application/json")
+    public NamespaceQuota getQuota(@PathVariable("namespace") String namespace) {
+        return admission.getQuota(namespace);
+    }
+
+    @RequestMapping(path = "/quota/{namespace}", method = RequestMethod.PUT, produces = "application/json", consumes = "application/json")
+    public Result putQuota(@PathVariable("namespace") String namespace, @RequestBody NamespaceQuota quota) {
+        admission.setQuota(namespace, quota);
+        return NamespacesController.OK;
+    }
+
+    @RequestMapping(path = "/quota/{namespace}", method = RequestMethod.DELETE)
+    public Result deleteQuota(@PathVariable("namespace") String namespace) {
+        admission.resetQuota(namespace);
+        return NamespacesController.OK;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import threeguys.docsdb.api.ReplicationStatus;
+import threeguys.docsdb.replication.Checkpoints;
+import threeguys.docsdb.replication.ReplicaDatabaseImpl;
+import threeguys.docsdb.replication.ReplicationSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@RestController
+public class ReplicationController {
+
+    public static final int MAX_BATCHES = 10000;
+
+    private final Database db;
+
+    public ReplicationController(@Autowired Database db) {
+        this.db = db;
+    }
+
+    private ReplicationSource source() {
+        if (!(db instanceof ReplicationSource)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "this database can not be replicated");
+        }
+        return (ReplicationSource) db;
+    }
+
+    @RequestMapping(path = "/replication/status", method = RequestMethod.GET, produces = "application/json")
+    public ReplicationStatus getStatus() {
+        if (db instanceof ReplicaDatabaseImpl) {
+            return ((ReplicaDatabaseImpl) db).getStatus();
+        }
+
+        long latest = source().getLatestSequenceNumber();
+        return new ReplicationStatus(ReplicationStatus.PRIMARY, latest, latest, 0, null);
+    }
+
+    @RequestMapping(path = "/replication/updates", method = RequestMethod.GET, produces = "application/octet-stream")
+    public byte [] getUpdates(@RequestParam("since") long since,
+                              @RequestParam(name = "limit", defaultValue = "1000") int limit) throws DatabaseException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        source().getUpdatesSince(since, Math.max(1, Math.min(limit, MAX_BATCHES))).writeTo(out);
+        return out.toByteArray();
+    }
+
+    @RequestMapping(path = "/replication/checkpoint", method = RequestMethod.GET, produces = "application/zip")
+    public StreamingResponseBody getCheckpoint() throws DatabaseException, IOException {
+        ReplicationSource source = source();
+        Path dir = Files.createTempDirectory("docsdb-checkpoint");
+        Path checkpoint = dir.resolve("checkpoint");
+
+        try {
+            source.createCheckpoint(checkpoint.toString());
+        } catch (DatabaseException e) {
+            Checkpoints.delete(dir);
+            throw e;
+        }
+
+        return out -> {
+            try {
+                Checkpoints.zip(checkpoint, out);
+            } finally {
+                Checkpoints.delete(dir);
+            }
+        };
+    }
+
+}
@@ -15,18 +15,165 @@
  */
 package threeguys.docsdb;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import threeguys.docsdb.admission.AdmissionControl;
+import threeguys.docsdb.admission.WriteStallMonitor;
+import threeguys.docsdb.api.NamespaceQuota;
+import threeguys.docsdb.async.BatchingAsyncDatabase;
+import threeguys.docsdb.async.DirectAsyncDatabase;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
 import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+import threeguys.docsdb.impl.sharded.ShardedDatabaseImpl;
+import threeguys.docsdb.impl.tiered.TieredDatabaseImpl;
+import threeguys.docsdb.ingest.BufferPool;
+import threeguys.docsdb.ingest.DocumentReader;
+import threeguys.docsdb.query.QueryEngine;
+import threeguys.docsdb.replication.ReplicaDatabaseImpl;
+import threeguys.docsdb.trace.Tracer;
+import threeguys.docsdb.wire.WireServer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @SpringBootApplication
 public class Server {
 
+    private static final Logger log = LoggerFactory.getLogger(Server.class);
+
+    public static final long DEFAULT_WAL_TTL_SECONDS = 3600;
+
+    @Bean
+    public Tracer tracer(@Value("${DOCSDB_SLOW_REQUEST_MS:-1}") long slowRequestMillis,
+                         @Value("${DOCSDB_SLOW_LOG_SIZE:1000}") int slowLogSize) {
+        return new Tracer(slowRequestMillis, slowLogSize);
+    }
+
+    @Bean
+    public RocksDbConfig rocksDbConfig(Tracer tracer,
+                                       @Value("${DOCSDB_BACKGROUND_BYTES_PER_SEC:0}") long backgroundBytesPerSecond,
+                                       @Value("${DOCSDB_MEMORY_BUDGET_BYTES:0}") long memoryBudgetBytes,
+                                       @Value("${DOCSDB_WRITE_BUFFER_RATIO:0.5}") double writeBufferRatio,
+                                       @Value("${DOCSDB_COLD_PATH:}") String coldPath,
+                                       @Value("${DOCSDB_FAST_TIER_BYTES:10737418240}") long fastTierBytes,
+                                       @Value("${DOCSDB_WAL_TTL_SEC:-1}") long walTtlSeconds,
+                                       @Value("${DOCSDB_PATH:#{'docs.db'}}") String path,
+                                       @Value("${DOCSDB_REPLICA_OF:}") String replicaOf) {
+        // Only a single unsharded primary serves its WAL to replicas, everything else has no use for the archive
+        if (walTtlSeconds < 0) {
+            boolean replicated = replicaOf.isEmpty() && coldPath.isEmpty() && !path.contains(",");
+            walTtlSeconds = replicated ? DEFAULT_WAL_TTL_SECONDS : 0;
+        }
+
+        return new RocksDbConfig()
+                .setBackgroundBytesPerSecond(backgroundBytesPerSecond)
+                .setMemoryBudgetBytes(memoryBudgetBytes)
+                .setWriteBufferRatio(writeBufferRatio)
+                .setColdPath(coldPath.isEmpty() ? null : coldPath)
+                .setFastTierBytes(fastTierBytes)
+                .setWalTtlSeconds(walTtlSeconds)
+                .setTracer(tracer.isEnabled() ? tracer : null);
+    }
+
+    @Bean
+    public Database db(RocksDbConfig config,
+                       @Value("${DOCSDB_PATH:#{'docs.db'}}") String path,
+                       @Value("${DOCSDB_REPLICA_OF:}") String replicaOf,
+                       @Value("${DOCSDB_REPLICA_BATCHES:1000}") int replicaBatches,
+                       @Value("${DOCSDB_REPLICA_POLL_MS:100}") long replicaPollMillis,
+                       @Value("${DOCSDB_REPLICA_MAX_STALENESS_MS:10000}") long replicaMaxStalenessMillis) throws DatabaseException {
+        // A comma separated list of paths shards the keys across one database per path
+        List<String> paths = Arrays.stream(path.split(","))
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .collect(Collectors.toList());
+
+        if (config.getColdPath() != null && (paths.size() > 1 || !replicaOf.isEmpty())) {
+            throw new IllegalArgumentException("tiered storage can not be combined with sharding or replication");
+        }
+
+        if (!replicaOf.isEmpty()) {
+            if (paths.size() > 1) {
+                throw new IllegalArgumentException("a replica can not be sharded");
+            }
+            return ReplicaDatabaseImpl.openReplica(replicaOf, paths.isEmpty() ? path : paths.get(0), config,
+                    replicaBatches, replicaPollMillis, replicaMaxStalenessMillis);
+        } else if (paths.size() > 1) {
+            return ShardedDatabaseImpl.openDatabase(paths, config);
+        } else if (config.getColdPath() != null) {
+            return TieredDatabaseImpl.openDatabase(paths.isEmpty() ? path : paths.get(0), config);
+        }
+
+        if (config.getWalTtlSeconds() == 0) {
+            log.warn("DOCSDB_WAL_TTL_SEC is 0, replicas that fall behind a flush will have to be bootstrapped again");
+        }
+        return RocksDbDatabaseImpl.openDatabase(paths.isEmpty() ? path : paths.get(0), config);
+    }
+
+    @Bean
+    public AsyncDatabase asyncDb(Database db, Tracer tracer,
+                                 @Value("${DOCSDB_STORAGE_THREADS:4}") int storageThreads,
+                                 @Value("${DOCSDB_STORAGE_BATCH:256}") int storageBatch,
+                                 @Value("${DOCSDB_STORAGE_QUEUE:10000}") int storageQueue) {
+        // Without storage threads operations run on the request thread
+        if (storageThreads <= 0) {
+            return new DirectAsyncDatabase(db);
+        }
+        return new BatchingAsyncDatabase(db, storageThreads, storageBatch, storageQueue,
+                tracer.isEnabled() ? tracer : null).start();
+    }
+
+    @Bean
+    public AdmissionControl admissionControl(Database db,
+                                             @Value("${DOCSDB_QUOTA_REQUESTS_PER_SEC:0}") long requestsPerSecond,
+                                             @Value("${DOCSDB_QUOTA_BYTES_PER_SEC:0}") long bytesPerSecond,
+                                             @Value("${DOCSDB_SHED_ON_WRITE_STALL:true}") boolean shedOnWriteStall) {
+        WriteStallMonitor stallMonitor = shedOnWriteStall && db instanceof WriteStallMonitor
+                ? (WriteStallMonitor) db
+                : key -> false;
+        return new AdmissionControl(new NamespaceQuota(requestsPerSecond, bytesPerSecond), stallMonitor);
+    }
+
+    @Bean
+    public DocumentReader documentReader(@Value("${DOCSDB_MAX_DOCUMENT_BYTES:16777216}") int maxDocumentBytes,
+                                         @Value("${DOCSDB_INGEST_POOL_BYTES:67108864}") long poolBytes,
+                                         @Value("${DOCSDB_INGEST_MAX_BYTES:268435456}") long maxIngestBytes,
+                                         @Value("${DOCSDB_VALIDATE_JSON:true}") boolean validateJson) {
+        return new DocumentReader(new BufferPool(4096, maxDocumentBytes, poolBytes, maxIngestBytes), maxDocumentBytes, validateJson);
+    }
+
+    @Bean
+    public QueryEngine queryEngine(Database db, @Value("${DOCSDB_QUERY_THREADS:0}") int queryThreads) {
+        int threads = queryThreads > 0 ? queryThreads : Runtime.getRuntime().availableProcessors();
+        return new QueryEngine(db, threads);
+    }
+
+    @Bean
+    public WebMvcConfigurer asyncSupport(@Value("${DOCSDB_ASYNC_TIMEOUT_MS:0}") long timeoutMillis) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                // Streamed queries and checkpoints take as long as the data they go through, so rather than
+                // the container's default (30s on Tomcat) they are only cut off when a timeout is configured
+                configurer.setDefaultTimeout(timeoutMillis > 0 ? timeoutMillis : -1);
+            }
+        };
+    }
+
     @Bean
-    public Database db(@Value("${DOCSDB_PATH:#{'docs.db'}}") String path) throws DatabaseException {
-        return RocksDbDatabaseImpl.openDatabase(path);
+    @ConditionalOnProperty("DOCSDB_WIRE_PORT")
+    public WireServer wireServer(AsyncDatabase asyncDb, AdmissionControl admissionControl, DocumentReader documentReader,
+                                 @Value("${DOCSDB_WIRE_PORT}") int port) throws IOException {
+        return new WireServer(port, asyncDb, admissionControl, documentReader).start();
     }
 
     public static void main(String args[]) {
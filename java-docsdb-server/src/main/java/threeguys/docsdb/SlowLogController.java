@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import threeguys.docsdb.api.Result;
+import threeguys.docsdb.api.SlowRequest;
+import threeguys.docsdb.trace.Tracer;
+
+import java.util.List;
+
+@RestController
+public class SlowLogController {
+
+    private final Tracer tracer;
+
+    public SlowLogController(@Autowired Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    private void checkEnabled() {
+        if (!tracer.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "request tracing is disabled");
+        }
+    }
+
+    @RequestMapping(path = "/admin/slowlog", method = RequestMethod.GET, produces = "application/json")
+    public List<SlowRequest> getSlowRequests(@RequestParam(value = "limit", defaultValue = "100") int limit) {
+        checkEnabled();
+        return tracer.getSlowLog().getEntries(Math.max(0, limit));
+    }
+
+    @RequestMapping(path = "/admin/slowlog", method = RequestMethod.DELETE, produces = "application/json")
+    public Result clearSlowRequests() {
+        checkEnabled();
+        tracer.getSlowLog().clear();
+        return NamespacesController.OK;
+    }
+
+}
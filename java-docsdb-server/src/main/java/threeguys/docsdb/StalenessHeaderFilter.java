@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import threeguys.docsdb.replication.ReplicaDatabaseImpl;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Reports how far behind the primary a replica is on every response it serves.
+ */
+@Component
+public class StalenessHeaderFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Docsdb-Staleness-Ms";
+
+    private final Database db;
+
+    public StalenessHeaderFilter(@Autowired Database db) {
+        this.db = db;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (db instanceof ReplicaDatabaseImpl) {
+            response.setHeader(HEADER, Long.toString(((ReplicaDatabaseImpl) db).getStalenessMillis()));
+        }
+        chain.doFilter(request, response);
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import threeguys.docsdb.api.TierUsage;
+
+import java.util.List;
+
+/**
+ * Implemented by databases that spread namespaces over fast and capacity storage.
+ */
+public interface TieredStorage {
+
+    String getPlacement(String namespace);
+
+    /**
+     * Places a namespace that hasn't been used yet, namespaces can't move once they hold data.
+     */
+    String setPlacement(String namespace, String placement) throws DatabaseException;
+
+    List<TierUsage> getTierUsage() throws DatabaseException;
+
+}
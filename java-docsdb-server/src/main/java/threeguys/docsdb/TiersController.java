@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import threeguys.docsdb.api.Placement;
+import threeguys.docsdb.api.TierUsage;
+
+import java.util.List;
+
+@RestController
+public class TiersController {
+
+    private final Database db;
+
+    public TiersController(@Autowired Database db) {
+        this.db = db;
+    }
+
+    private TieredStorage storage() {
+        if (!(db instanceof TieredStorage)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "this database is not tiered");
+        }
+        return (TieredStorage) db;
+    }
+
+    @RequestMapping(path = "/tiers", method = RequestMethod.GET, produces = "application/json")
+    public List<TierUsage> getTiers() throws DatabaseException {
+        return storage().getTierUsage();
+    }
+
+    @RequestMapping(path = "/placement/{namespace}", method = RequestMethod.GET, produces = "application/json")
+    public Placement getPlacement(@PathVariable("namespace") String namespace) {
+        return new Placement(storage().getPlacement(namespace));
+    }
+
+    @RequestMapping(path = "/placement/{namespace}", method = RequestMethod.PUT, produces = "application/json", consumes = "application/json")
+    public Placement putPlacement(@PathVariable("namespace") String namespace, @RequestBody Placement placement) throws DatabaseException {
+        try {
+            return new Placement(storage().setPlacement(namespace, placement.getPlacement()));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import threeguys.docsdb.api.ServerVersion;
+
+@RestController
+public class VersionController {
+
+    @RequestMapping(path = "/version", method = RequestMethod.GET, produces = "application/json")
+    public ServerVersion getVersion() {
+        String version = Server.class.getPackage().getImplementationVersion();
+        return new ServerVersion(version == null ? "dev" : version);
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.admission;
+
+import threeguys.docsdb.api.NamespaceQuota;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether a request against a namespace may go ahead. Every namespace gets its own request and
+ * byte rate buckets (the default quota unless one was set for it), and writes are shed while the storage
+ * engine is stalling so that they don't pile up behind it. Namespaces without a limit share one unlimited
+ * set of buckets, and once enough of them pile up the buckets that have refilled completely are dropped
+ * every second, since a new bucket would start out the same way.
+ */
+public class AdmissionControl {
+
+    static final int MIN_SWEEP_SIZE = 1024;
+
+    // Buckets hold a second's worth of tokens, so anything idle for that long (and not in debt) has refilled
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private static class Buckets {
+
+        final TokenBucket requests;
+        final TokenBucket bytes;
+
+        Buckets(NamespaceQuota quota, TokenBucket.Clock clock) {
+            this.requests = new TokenBucket(quota.getRequestsPerSecond(), clock);
+            this.bytes = new TokenBucket(quota.getBytesPerSecond(), clock);
+        }
+
+        boolean isUnlimited() {
+            return requests.isUnlimited() && bytes.isUnlimited();
+        }
+
+        boolean isFull() {
+            return requests.isFull() && bytes.isFull();
+        }
+
+    }
+
+    private final NamespaceQuota defaultQuota;
+    private final WriteStallMonitor stallMonitor;
+    private final TokenBucket.Clock clock;
+    private final Buckets unlimited;
+    private final Map<String, NamespaceQuota> quotas = new ConcurrentHashMap<>();
+    private final Map<String, Buckets> buckets = new ConcurrentHashMap<>();
+
+    private volatile long sweptAt;
+
+    public AdmissionControl(NamespaceQuota defaultQuota, WriteStallMonitor stallMonitor) {
+        this(defaultQuota, stallMonitor, System::nanoTime);
+    }
+
+    public AdmissionControl(NamespaceQuota defaultQuota, WriteStallMonitor stallMonitor, TokenBucket.Clock clock) {
+        this.defaultQuota = defaultQuota;
+        this.stallMonitor = stallMonitor;
+        this.clock = clock;
+        this.unlimited = new Buckets(NamespaceQuota.UNLIMITED, clock);
+        this.sweptAt = clock.nanoTime();
+    }
+
+    public static AdmissionControl unlimited() {
+        return new AdmissionControl(NamespaceQuota.UNLIMITED, key -> false);
+    }
+
+    public NamespaceQuota getQuota(String namespace) {
+        return quotas.getOrDefault(namespace, defaultQuota);
+    }
+
+    public void setQuota(String namespace, NamespaceQuota quota) {
+        quotas.put(namespace, quota);
+        buckets.remove(namespace);
+    }
+
+    public void resetQuota(String namespace) {
+        quotas.remove(namespace);
+        buckets.remove(namespace);
+    }
+
+    private Buckets getBuckets(String namespace) {
+        Buckets b = buckets.get(namespace);
+        if (b != null) {
+            return b;
+        }
+
+        b = new Buckets(getQuota(namespace), clock);
+        if (b.isUnlimited()) {
+            return unlimited;
+        }
+
+        if (buckets.size() >= MIN_SWEEP_SIZE && clock.nanoTime() - sweptAt >= SWEEP_INTERVAL_NANOS) {
+            sweep();
+        }
+        Buckets existing = buckets.putIfAbsent(namespace, b);
+        return existing != null ? existing : b;
+    }
+
+    /**
+     * Drops the buckets that have refilled, a request racing with this may get a fresh bucket and with it
+     * at most a second's worth of extra tokens.
+     */
+    private synchronized void sweep() {
+        long now = clock.nanoTime();
+        if (now - sweptAt >= SWEEP_INTERVAL_NANOS) {
+            buckets.values().removeIf(Buckets::isFull);
+            sweptAt = now;
+        }
+    }
+
+    int getTrackedNamespaces() {
+        return buckets.size();
+    }
+
+    private void admit(String namespace, long bytes) throws ThrottledException {
+        Buckets b = getBuckets(namespace);
+        if (!b.bytes.hasTokens()) {
+            throw new ThrottledException("byte rate quota exceeded for namespace " + namespace);
+        }
+        if (!b.requests.tryAcquire(1)) {
+            throw new ThrottledException("request rate quota exceeded for namespace " + namespace);
+        }
+        b.bytes.consume(bytes);
+    }
+
+    /**
+     * Admits a read, the bytes it returns should be charged afterwards with {@link #charge(String, long)}.
+     */
+    public void admitRead(String namespace) throws ThrottledException {
+        admit(namespace, 0);
+    }
+
+    public void admitWrite(String namespace, String key, long bytes) throws ThrottledException {
+        if (stallMonitor.isWriteStalled(key)) {
+            throw new ThrottledException("writes are stalled, try again later");
+        }
+        admit(namespace, bytes);
+    }
+
+    public void charge(String namespace, long bytes) {
+        getBuckets(namespace).bytes.consume(bytes);
+    }
+
+}
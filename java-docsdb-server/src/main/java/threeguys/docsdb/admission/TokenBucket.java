@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.admission;
+
+/**
+ * Classic token bucket refilled at ratePerSecond up to one second's worth of tokens. The level may go
+ * negative through {@link #consume(long)}, which is how costs that are only known after the fact (like
+ * the size of a value that was read) are charged; the debt is paid back before anything else is let in.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long ratePerSecond;
+    private final long capacity;
+    private final Clock clock;
+
+    private double level;
+    private long refilledAt;
+
+    @FunctionalInterface
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public TokenBucket(long ratePerSecond) {
+        this(ratePerSecond, System::nanoTime);
+    }
+
+    public TokenBucket(long ratePerSecond, Clock clock) {
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = Math.max(1, ratePerSecond);
+        this.clock = clock;
+        this.level = capacity;
+        this.refilledAt = clock.nanoTime();
+    }
+
+    public boolean isUnlimited() {
+        return ratePerSecond <= 0;
+    }
+
+    private void refill() {
+        long now = clock.nanoTime();
+        level = Math.min(capacity, level + (double) (now - refilledAt) * ratePerSecond / NANOS_PER_SECOND);
+        refilledAt = now;
+    }
+
+    /**
+     * Takes tokens if there are at least that many available.
+     */
+    public synchronized boolean tryAcquire(long tokens) {
+        if (isUnlimited()) {
+            return true;
+        }
+
+        refill();
+        if (level >= tokens) {
+            level -= tokens;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * True if there are tokens left, without taking any.
+     */
+    public synchronized boolean hasTokens() {
+        if (isUnlimited()) {
+            return true;
+        }
+
+        refill();
+        return level > 0;
+    }
+
+    /**
+     * True if the bucket has refilled completely, at which point it is no different from a new one.
+     */
+    public synchronized boolean isFull() {
+        if (isUnlimited()) {
+            return true;
+        }
+
+        refill();
+        return level >= capacity;
+    }
+
+    /**
+     * Takes tokens unconditionally, possibly going into debt.
+     */
+    public synchronized void consume(long tokens) {
+        if (!isUnlimited()) {
+            refill();
+            level -= tokens;
+        }
+    }
+
+}
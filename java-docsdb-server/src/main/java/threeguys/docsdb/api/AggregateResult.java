@@ -0,0 +1,67 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import java.util.Map;
+import java.util.Objects;
+
+public class AggregateResult {
+
+    private final long scanned;
+    private final long scannedBytes;
+    private final long matched;
+    private final Map<String, FieldStats> fields;
+
+    public AggregateResult(long scanned, long scannedBytes, long matched, Map<String, FieldStats> fields) {
+        this.scanned = scanned;
+        this.scannedBytes = scannedBytes;
+        this.matched = matched;
+        this.fields = fields;
+    }
+
+    public long getScanned() {
+        return scanned;
+    }
+
+    public long getScannedBytes() {
+        return scannedBytes;
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    public Map<String, FieldStats> getFields() {
+        return fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AggregateResult that = (AggregateResult) o;
+        return scanned == that.scanned &&
+                scannedBytes == that.scannedBytes &&
+                matched == that.matched &&
+                fields.equals(that.fields);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(scanned, scannedBytes, matched, fields);
+    }
+
+}
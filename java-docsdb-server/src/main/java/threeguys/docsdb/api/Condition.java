@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Objects;
+
+public class Condition {
+
+    public static final String EQ = "eq";
+    public static final String LT = "lt";
+    public static final String LTE = "lte";
+    public static final String GT = "gt";
+    public static final String GTE = "gte";
+    public static final String EXISTS = "exists";
+
+    private final String field;
+    private final String op;
+    private final JsonNode value;
+
+    /**
+     * field is a dotted path (like address.city) or a JSON pointer. exists takes no value, or false to
+     * match documents without the field.
+     */
+    @JsonCreator
+    public Condition(@JsonProperty("field") String field,
+                     @JsonProperty("op") String op,
+                     @JsonProperty("value") JsonNode value) {
+        this.field = field;
+        this.op = op;
+        this.value = value;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public String getOp() {
+        return op;
+    }
+
+    public JsonNode getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Condition condition = (Condition) o;
+        return Objects.equals(field, condition.field) &&
+                Objects.equals(op, condition.op) &&
+                Objects.equals(value, condition.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(field, op, value);
+    }
+
+}
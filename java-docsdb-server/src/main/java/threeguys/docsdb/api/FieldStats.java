@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+
+public class FieldStats {
+
+    private final long count;
+    private final double sum;
+    private final Double min;
+    private final Double max;
+
+    public FieldStats(long count, double sum, @Nullable Double min, @Nullable Double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Matching documents that have a numeric value for the field.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public Double getMin() {
+        return min;
+    }
+
+    public Double getMax() {
+        return max;
+    }
+
+    public FieldStats add(FieldStats other) {
+        return new FieldStats(count + other.count, sum + other.sum,
+                min == null ? other.min : other.min == null ? min : Double.valueOf(Math.min(min, other.min)),
+                max == null ? other.max : other.max == null ? max : Double.valueOf(Math.max(max, other.max)));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FieldStats that = (FieldStats) o;
+        return count == that.count &&
+                Double.compare(that.sum, sum) == 0 &&
+                Objects.equals(min, that.min) &&
+                Objects.equals(max, that.max);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(count, sum, min, max);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+public class MemoryUsage {
+
+    private final long budgetBytes;
+    private final long writeBufferBudgetBytes;
+    private final long blockCacheUsageBytes;
+    private final long blockCachePinnedBytes;
+    private final Map<String, NamespaceMemory> namespaces;
+
+    public MemoryUsage(long budgetBytes, long writeBufferBudgetBytes, long blockCacheUsageBytes,
+                       long blockCachePinnedBytes, Map<String, NamespaceMemory> namespaces) {
+        this.budgetBytes = budgetBytes;
+        this.writeBufferBudgetBytes = writeBufferBudgetBytes;
+        this.blockCacheUsageBytes = blockCacheUsageBytes;
+        this.blockCachePinnedBytes = blockCachePinnedBytes;
+        this.namespaces = namespaces;
+    }
+
+    /**
+     * Memory shared by the block cache and memtables of every namespace, 0 when no budget is set.
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * The part of the budget memtables may use before they are flushed.
+     */
+    public long getWriteBufferBudgetBytes() {
+        return writeBufferBudgetBytes;
+    }
+
+    /**
+     * Usage of the shared cache, which includes the memtable memory charged against it. Without a budget,
+     * the usage of every namespace's own cache added up.
+     */
+    public long getBlockCacheUsageBytes() {
+        return blockCacheUsageBytes;
+    }
+
+    public long getBlockCachePinnedBytes() {
+        return blockCachePinnedBytes;
+    }
+
+    public Map<String, NamespaceMemory> getNamespaces() {
+        return namespaces;
+    }
+
+    /**
+     * Adds up the reports of databases opened from the same config. With a budget they all report the
+     * same shared cache, without one each has its own.
+     */
+    public static MemoryUsage combine(Collection<MemoryUsage> parts) {
+        long budget = 0;
+        long writeBufferBudget = 0;
+        long cacheUsage = 0;
+        long pinned = 0;
+        Map<String, NamespaceMemory> namespaces = new TreeMap<>();
+
+        for (MemoryUsage usage : parts) {
+            usage.getNamespaces().forEach((ns, memory) -> namespaces.merge(ns, memory, NamespaceMemory::add));
+            budget = usage.getBudgetBytes();
+            writeBufferBudget = usage.getWriteBufferBudgetBytes();
+
+            if (budget > 0) {
+                cacheUsage = Math.max(cacheUsage, usage.getBlockCacheUsageBytes());
+                pinned = Math.max(pinned, usage.getBlockCachePinnedBytes());
+            } else {
+                cacheUsage += usage.getBlockCacheUsageBytes();
+                pinned += usage.getBlockCachePinnedBytes();
+            }
+        }
+
+        return new MemoryUsage(budget, writeBufferBudget, cacheUsage, pinned, namespaces);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MemoryUsage that = (MemoryUsage) o;
+        return budgetBytes == that.budgetBytes &&
+                writeBufferBudgetBytes == that.writeBufferBudgetBytes &&
+                blockCacheUsageBytes == that.blockCacheUsageBytes &&
+                blockCachePinnedBytes == that.blockCachePinnedBytes &&
+                namespaces.equals(that.namespaces);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(budgetBytes, writeBufferBudgetBytes, blockCacheUsageBytes, blockCachePinnedBytes, namespaces);
+    }
+
+}
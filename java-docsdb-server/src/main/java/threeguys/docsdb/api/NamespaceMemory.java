@@ -0,0 +1,62 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import java.util.Objects;
+
+public class NamespaceMemory {
+
+    private final long memTableBytes;
+    private final long tableReaderBytes;
+
+    public NamespaceMemory(long memTableBytes, long tableReaderBytes) {
+        this.memTableBytes = memTableBytes;
+        this.tableReaderBytes = tableReaderBytes;
+    }
+
+    /**
+     * Active, immutable and pinned memtables of the namespace.
+     */
+    public long getMemTableBytes() {
+        return memTableBytes;
+    }
+
+    /**
+     * Index and filter blocks held outside of the block cache.
+     */
+    public long getTableReaderBytes() {
+        return tableReaderBytes;
+    }
+
+    public NamespaceMemory add(NamespaceMemory other) {
+        return new NamespaceMemory(memTableBytes + other.memTableBytes, tableReaderBytes + other.tableReaderBytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NamespaceMemory that = (NamespaceMemory) o;
+        return memTableBytes == that.memTableBytes &&
+                tableReaderBytes == that.tableReaderBytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(memTableBytes, tableReaderBytes);
+    }
+
+}
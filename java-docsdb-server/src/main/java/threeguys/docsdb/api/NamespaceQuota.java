@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+public class NamespaceQuota {
+
+    public static final NamespaceQuota UNLIMITED = new NamespaceQuota(0, 0);
+
+    private final long requestsPerSecond;
+    private final long bytesPerSecond;
+
+    @JsonCreator
+    public NamespaceQuota(@JsonProperty("requestsPerSecond") long requestsPerSecond,
+                          @JsonProperty("bytesPerSecond") long bytesPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public long getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        NamespaceQuota that = (NamespaceQuota) o;
+        return requestsPerSecond == that.requestsPerSecond &&
+                bytesPerSecond == that.bytesPerSecond;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(requestsPerSecond, bytesPerSecond);
+    }
+
+}
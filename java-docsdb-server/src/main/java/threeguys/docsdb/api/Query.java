@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+public class Query {
+
+    private final String start;
+    private final String end;
+    private final List<Condition> where;
+    private final List<String> aggregate;
+    private final long limit;
+
+    /**
+     * Documents with keys from start (inclusive) to end (exclusive) that match every condition. Either
+     * bound may be null, a limit of 0 returns every match.
+     */
+    @JsonCreator
+    public Query(@JsonProperty("start") String start,
+                 @JsonProperty("end") String end,
+                 @JsonProperty("where") List<Condition> where,
+                 @JsonProperty("aggregate") List<String> aggregate,
+                 @JsonProperty("limit") long limit) {
+        this.start = start;
+        this.end = end;
+        this.where = where == null ? Collections.emptyList() : where;
+        this.aggregate = aggregate == null ? Collections.emptyList() : aggregate;
+        this.limit = limit;
+    }
+
+    public String getStart() {
+        return start;
+    }
+
+    public String getEnd() {
+        return end;
+    }
+
+    public List<Condition> getWhere() {
+        return where;
+    }
+
+    /**
+     * Fields to compute count, sum, min and max of over the matching documents.
+     */
+    public List<String> getAggregate() {
+        return aggregate;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Query query = (Query) o;
+        return limit == query.limit &&
+                Objects.equals(start, query.start) &&
+                Objects.equals(end, query.end) &&
+                where.equals(query.where) &&
+                aggregate.equals(query.aggregate);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end, where, aggregate, limit);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+
+public class ReplicationStatus {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final String role;
+    private final long appliedSequence;
+    private final long primarySequence;
+    private final long stalenessMillis;
+    private final String error;
+
+    public ReplicationStatus(@NonNull String role, long appliedSequence, long primarySequence,
+                             long stalenessMillis, @Nullable String error) {
+        this.role = role;
+        this.appliedSequence = appliedSequence;
+        this.primarySequence = primarySequence;
+        this.stalenessMillis = stalenessMillis;
+        this.error = error;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    public long getPrimarySequence() {
+        return primarySequence;
+    }
+
+    public long getStalenessMillis() {
+        return stalenessMillis;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReplicationStatus that = (ReplicationStatus) o;
+        return appliedSequence == that.appliedSequence &&
+                primarySequence == that.primarySequence &&
+                stalenessMillis == that.stalenessMillis &&
+                role.equals(that.role) &&
+                Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(role, appliedSequence, primarySequence, stalenessMillis, error);
+    }
+
+}
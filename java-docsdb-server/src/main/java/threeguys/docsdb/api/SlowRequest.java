@@ -0,0 +1,106 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import java.util.Map;
+import java.util.Objects;
+
+public class SlowRequest {
+
+    private final long id;
+    private final String method;
+    private final String path;
+    private final int status;
+    private final long startedAt;
+    private final long totalMicros;
+    private final Map<String, Long> timingsMicros;
+    private final Map<String, Long> counters;
+
+    public SlowRequest(long id, String method, String path, int status, long startedAt, long totalMicros,
+                       Map<String, Long> timingsMicros, Map<String, Long> counters) {
+        this.id = id;
+        this.method = method;
+        this.path = path;
+        this.status = status;
+        this.startedAt = startedAt;
+        this.totalMicros = totalMicros;
+        this.timingsMicros = timingsMicros;
+        this.counters = counters;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Epoch milliseconds the request arrived at.
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    /**
+     * Time spent in each phase of the request. Dotted names break down the phase before the dot, and
+     * http is whatever the top level phases don't account for (mostly reading and writing the request).
+     */
+    public Map<String, Long> getTimingsMicros() {
+        return timingsMicros;
+    }
+
+    /**
+     * RocksDB statistics that changed while the request's storage operations ran.
+     */
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SlowRequest that = (SlowRequest) o;
+        return id == that.id &&
+                status == that.status &&
+                startedAt == that.startedAt &&
+                totalMicros == that.totalMicros &&
+                Objects.equals(method, that.method) &&
+                Objects.equals(path, that.path) &&
+                timingsMicros.equals(that.timingsMicros) &&
+                counters.equals(that.counters);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, method, path, status, startedAt, totalMicros, timingsMicros, counters);
+    }
+
+}
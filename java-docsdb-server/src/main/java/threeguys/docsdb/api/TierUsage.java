@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+public class TierUsage {
+
+    private final String name;
+    private final List<String> paths;
+    private final long targetBytes;
+    private final long sstBytes;
+    private final long sstFiles;
+    private final long freeBytes;
+    private final Map<String, Long> namespaces;
+
+    public TierUsage(String name, List<String> paths, long targetBytes, long sstBytes, long sstFiles,
+                     long freeBytes, Map<String, Long> namespaces) {
+        this.name = name;
+        this.paths = paths;
+        this.targetBytes = targetBytes;
+        this.sstBytes = sstBytes;
+        this.sstFiles = sstFiles;
+        this.freeBytes = freeBytes;
+        this.namespaces = namespaces;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * SST data tiered namespaces may keep here before spilling to the next tier, 0 is unbounded.
+     */
+    public long getTargetBytes() {
+        return targetBytes;
+    }
+
+    public long getSstBytes() {
+        return sstBytes;
+    }
+
+    public long getSstFiles() {
+        return sstFiles;
+    }
+
+    /**
+     * Usable space left on the tier's disk.
+     */
+    public long getFreeBytes() {
+        return freeBytes;
+    }
+
+    /**
+     * SST bytes of each namespace on this tier.
+     */
+    public Map<String, Long> getNamespaces() {
+        return namespaces;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TierUsage tierUsage = (TierUsage) o;
+        return targetBytes == tierUsage.targetBytes &&
+                sstBytes == tierUsage.sstBytes &&
+                sstFiles == tierUsage.sstFiles &&
+                freeBytes == tierUsage.freeBytes &&
+                name.equals(tierUsage.name) &&
+                paths.equals(tierUsage.paths) &&
+                namespaces.equals(tierUsage.namespaces);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, paths, targetBytes, sstBytes, sstFiles, freeBytes, namespaces);
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.async;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import threeguys.docsdb.AsyncDatabase;
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.admission.ThrottledException;
+import threeguys.docsdb.trace.Trace;
+import threeguys.docsdb.trace.Tracer;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Queues operations for a small pool of storage threads, which take whatever has queued up and turn it into
+ * as few native calls as possible: runs of reads become one multiGet per table, runs of writes become one
+ * write batch. Runs are executed in queue order, and a key always goes to the same thread, so operations on
+ * a key are applied in the order they were submitted. Each thread's queue is bounded, operations submitted
+ * while it is full fail with a {@link ThrottledException}. Futures are completed by a completion thread
+ * paired with each storage thread, so callers' stages never run on (or block) a storage thread while
+ * operations on a key still complete in order. A write that fails a batch fails on its own, the rest of
+ * the batch is written one by one.
+ */
+public class BatchingAsyncDatabase implements AsyncDatabase {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchingAsyncDatabase.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    public static final int DEFAULT_QUEUE_SIZE = 10_000;
+
+    private static class Request {
+
+        final String table;
+        final String key;
+        final boolean read;
+        final byte [] value;
+        final ByteBuffer buffer;
+        final Trace trace;
+        final long queuedAt;
+        final CompletableFuture<byte []> future = new CompletableFuture<>();
+
+        Request(String table, String key, boolean read, byte [] value, ByteBuffer buffer, Trace trace) {
+            this.table = table;
+            this.key = key;
+            this.read = read;
+            this.value = value;
+            this.buffer = buffer;
+            this.trace = trace;
+            this.queuedAt = trace == null ? 0 : System.nanoTime();
+        }
+
+        boolean isDelete() {
+            return value == null && buffer == null;
+        }
+
+        byte [] getValue() {
+            if (value != null) {
+                return value;
+            }
+            byte [] copy = new byte[buffer.remaining()];
+            buffer.duplicate().get(copy);
+            return copy;
+        }
+
+    }
+
+    private final Database db;
+    private final Tracer tracer;
+    private final int maxBatchSize;
+    private final List<BlockingQueue<Request>> queues;
+    private final List<Thread> threads;
+    private final List<ExecutorService> completers;
+    private volatile boolean running = true;
+
+    public BatchingAsyncDatabase(Database db, int threadCount, int maxBatchSize) {
+        this(db, threadCount, maxBatchSize, DEFAULT_QUEUE_SIZE, null);
+    }
+
+    /**
+     * With a tracer, traced requests record how long they queued and get the storage timings of the
+     * run they were executed in.
+     */
+    public BatchingAsyncDatabase(Database db, int threadCount, int maxBatchSize, int maxQueueSize, Tracer tracer) {
+        if (threadCount < 1 || maxBatchSize < 1 || maxQueueSize < 1) {
+            throw new IllegalArgumentException("threadCount, maxBatchSize and maxQueueSize must be positive");
+        }
+
+        this.db = db;
+        this.tracer = tracer;
+        this.maxBatchSize = maxBatchSize;
+        this.queues = new ArrayList<>(threadCount);
+        this.threads = new ArrayList<>(threadCount);
+        this.completers = new ArrayList<>(threadCount);
+
+        for (int i = 0; i < threadCount; i++) {
+            String completerName = "docsdb-completion-" + i;
+            ExecutorService completer = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, completerName);
+                t.setDaemon(true);
+                return t;
+            });
+
+            BlockingQueue<Request> queue = new LinkedBlockingQueue<>(maxQueueSize);
+            Thread thread = new Thread(() -> drain(queue, completer), "docsdb-storage-" + i);
+            thread.setDaemon(true);
+            queues.add(queue);
+            threads.add(thread);
+            completers.add(completer);
+        }
+    }
+
+    public BatchingAsyncDatabase start() {
+        threads.forEach(Thread::start);
+        return this;
+    }
+
+    private CompletableFuture<byte []> submit(Request request) {
+        if (!running) {
+            request.future.completeExceptionally(new DatabaseException("database is closed", null));
+            return request.future;
+        }
+
+        if (!queues.get(Math.floorMod(request.key.hashCode(), queues.size())).offer(request)) {
+            request.future.completeExceptionally(new ThrottledException("storage queue is full, try again later"));
+        }
+        return request.future;
+    }
+
+    private Trace currentTrace() {
+        return tracer == null ? null : tracer.current();
+    }
+
+    @Override
+    public CompletableFuture<byte []> get(String table, String key) {
+        return submit(new Request(table, key, true, null, null, currentTrace()));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String table, String key, byte [] data) {
+        return submit(new Request(table, key, false, data, null, currentTrace())).thenApply(v -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String table, String key, ByteBuffer data) {
+        return submit(new Request(table, key, false, null, data, currentTrace())).thenApply(v -> null);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String table, String key) {
+        return submit(new Request(table, key, false, null, null, currentTrace())).thenApply(v -> null);
+    }
+
+    @Override
+    public CompletableFuture<Map<String, byte []>> multiGet(String table, List<String> keys) {
+        // Split across the storage threads, where the keys are coalesced again with other reads
+        List<CompletableFuture<byte []>> futures = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            futures.add(get(table, key));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> {
+                    Map<String, byte []> results = new LinkedHashMap<>();
+                    for (int i = 0; i < keys.size(); i++) {
+                        byte [] value = futures.get(i).join();
+                        if (value != null) {
+                            results.put(keys.get(i), value);
+                        }
+                    }
+                    return results;
+                });
+    }
+
+    private void drain(BlockingQueue<Request> queue, Executor completer) {
+        List<Request> requests = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                Request first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                requests.add(first);
+                queue.drainTo(requests, maxBatchSize - 1);
+                process(requests, completer);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                log.error("storage thread failed", e);
+                requests.forEach(r -> r.future.completeExceptionally(e));
+            } finally {
+                requests.clear();
+            }
+        }
+
+        failQueued(queue);
+    }
+
+    private static void failQueued(BlockingQueue<Request> queue) {
+        DatabaseException closed = new DatabaseException("database is closed", null);
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.future.completeExceptionally(closed);
+        }
+    }
+
+    void process(List<Request> requests, Executor completer) {
+        int start = 0;
+        while (start < requests.size()) {
+            boolean read = requests.get(start).read;
+            int end = start + 1;
+            while (end < requests.size() && requests.get(end).read == read) {
+                end++;
+            }
+
+            List<Request> run = requests.subList(start, end);
+            if (read) {
+                processReads(run, completer);
+            } else {
+                processWrites(run, completer);
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Binds a trace for the run to the storage thread if any request in it is traced, so the database
+     * records into it. Everything the run recorded is added to each traced request by {@link #endRun}.
+     */
+    private Trace startRun(List<Request> run) {
+        if (tracer == null) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        Trace runTrace = null;
+        for (Request r : run) {
+            if (r.trace != null) {
+                r.trace.time("storage.queue", now - r.queuedAt);
+                r.trace.count("storage_run_size", run.size());
+                if (runTrace == null) {
+                    runTrace = new Trace(null, null);
+                }
+            }
+        }
+
+        if (runTrace != null) {
+            tracer.bind(runTrace);
+        }
+        return runTrace;
+    }
+
+    private void endRun(List<Request> run, Trace runTrace) {
+        if (runTrace == null) {
+            return;
+        }
+
+        tracer.restore(null);
+        for (Request r : run) {
+            if (r.trace != null) {
+                r.trace.add(runTrace);
+            }
+        }
+    }
+
+    private void processReads(List<Request> reads, Executor completer) {
+        Map<String, List<Request>> byTable = new LinkedHashMap<>();
+        reads.forEach(r -> byTable.computeIfAbsent(r.table, t -> new ArrayList<>()).add(r));
+
+        for (Map.Entry<String, List<Request>> table : byTable.entrySet()) {
+            List<Request> requests = table.getValue();
+            // Traces are complete before any future is, a response may be sent as soon as its future completes
+            Trace runTrace = startRun(requests);
+            Map<String, byte []> values;
+            try {
+                if (requests.size() == 1) {
+                    Request r = requests.get(0);
+                    values = Collections.singletonMap(r.key, db.get(r.table, r.key));
+                } else {
+                    Set<String> keys = new LinkedHashSet<>();
+                    requests.forEach(r -> keys.add(r.key));
+                    values = db.multiGet(table.getKey(), new ArrayList<>(keys));
+                }
+            } catch (DatabaseException | RuntimeException e) {
+                endRun(requests, runTrace);
+                completer.execute(() -> requests.forEach(r -> r.future.completeExceptionally(e)));
+                continue;
+            }
+
+            endRun(requests, runTrace);
+            completer.execute(() -> requests.forEach(r -> r.future.complete(values.get(r.key))));
+        }
+    }
+
+    /**
+     * Writes a single request, returning what it failed with.
+     */
+    private Exception write(Request r) {
+        try {
+            if (r.isDelete()) {
+                db.delete(r.table, r.key);
+            } else if (r.buffer != null) {
+                db.put(r.table, r.key, r.buffer);
+            } else {
+                db.put(r.table, r.key, r.value);
+            }
+            return null;
+        } catch (DatabaseException | RuntimeException e) {
+            return e;
+        }
+    }
+
+    private void processWrites(List<Request> writes, Executor completer) {
+        Trace runTrace = startRun(writes);
+        Exception [] errors = new Exception[writes.size()];
+        if (writes.size() == 1) {
+            errors[0] = write(writes.get(0));
+        } else {
+            try {
+                Batch batch = new Batch();
+                for (Request r : writes) {
+                    if (r.isDelete()) {
+                        batch.delete(r.table, r.key);
+                    } else {
+                        batch.put(r.table, r.key, r.getValue());
+                    }
+                }
+                db.write(batch);
+            } catch (DatabaseException | RuntimeException e) {
+                // Nothing of a failed batch was written, so each write is retried on its own in the same order
+                for (int i = 0; i < writes.size(); i++) {
+                    errors[i] = write(writes.get(i));
+                }
+            }
+        }
+
+        endRun(writes, runTrace);
+        // The run is a view of the drained requests, which are cleared as soon as this returns
+        List<Request> completed = new ArrayList<>(writes);
+        completer.execute(() -> {
+            for (int i = 0; i < completed.size(); i++) {
+                if (errors[i] == null) {
+                    completed.get(i).future.complete(null);
+                } else {
+                    completed.get(i).future.completeExceptionally(errors[i]);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        queues.forEach(BatchingAsyncDatabase::failQueued);
+
+        // Lets the completions already handed over run
+        for (ExecutorService completer : completers) {
+            completer.shutdown();
+            try {
+                completer.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.async;
+
+import threeguys.docsdb.AsyncDatabase;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseSupplier;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs every operation straight away on the calling thread and hands back a completed future.
+ */
+public class DirectAsyncDatabase implements AsyncDatabase {
+
+    private final Database db;
+
+    public DirectAsyncDatabase(Database db) {
+        this.db = db;
+    }
+
+    private static <T> CompletableFuture<T> call(DatabaseSupplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(supplier.get());
+        } catch (DatabaseException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<byte []> get(String table, String key) {
+        return call(() -> db.get(table, key));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String table, String key, byte [] data) {
+        return call(() -> db.put(table, key, data));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(String table, String key, ByteBuffer data) {
+        return call(() -> db.put(table, key, data));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String table, String key) {
+        return call(() -> db.delete(table, key));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, byte []>> multiGet(String table, List<String> keys) {
+        return call(() -> db.multiGet(table, keys));
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
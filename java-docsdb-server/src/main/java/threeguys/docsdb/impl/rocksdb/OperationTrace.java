@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.rocksdb;
+
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import threeguys.docsdb.trace.Trace;
+import threeguys.docsdb.trace.Tracer;
+
+import java.util.Locale;
+
+/**
+ * Times one RocksDB operation of a traced request and adds the statistics that changed while it ran.
+ * RocksJava has no per-thread perf context, so the counters come from the database wide statistics and
+ * include whatever other threads did at the same time. They are exact for a request running alone and
+ * show what the database was busy with otherwise.
+ */
+final class OperationTrace {
+
+    private static final TickerType [] TICKERS = {
+            TickerType.MEMTABLE_HIT,
+            TickerType.MEMTABLE_MISS,
+            TickerType.GET_HIT_L0,
+            TickerType.GET_HIT_L1,
+            TickerType.GET_HIT_L2_AND_UP,
+            TickerType.BLOCK_CACHE_HIT,
+            TickerType.BLOCK_CACHE_MISS,
+            TickerType.BLOCK_CACHE_BYTES_READ,
+            TickerType.BLOOM_FILTER_USEFUL,
+            TickerType.BYTES_READ,
+            TickerType.BYTES_WRITTEN,
+            TickerType.WAL_FILE_BYTES,
+            TickerType.STALL_MICROS,
+    };
+
+    private static final String [] NAMES = new String[TICKERS.length];
+
+    static {
+        for (int i = 0; i < TICKERS.length; i++) {
+            NAMES[i] = TICKERS[i].name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Trace trace;
+    private final String phase;
+    private final Statistics statistics;
+    private final long [] before;
+    private final long startNanos;
+
+    private OperationTrace(Trace trace, String phase, Statistics statistics) {
+        this.trace = trace;
+        this.phase = phase;
+        this.statistics = statistics;
+        this.before = statistics == null ? null : snapshot(statistics);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts tracing an operation, or returns null when tracing is off or the current thread isn't
+     * working on a traced request.
+     */
+    static OperationTrace start(Tracer tracer, Statistics statistics, String operation) {
+        if (tracer == null) {
+            return null;
+        }
+        Trace trace = tracer.current();
+        return trace == null ? null : new OperationTrace(trace, "storage.rocksdb." + operation, statistics);
+    }
+
+    void finish() {
+        trace.time(phase, System.nanoTime() - startNanos);
+        if (statistics != null) {
+            long [] after = snapshot(statistics);
+            for (int i = 0; i < TICKERS.length; i++) {
+                trace.count(NAMES[i], after[i] - before[i]);
+            }
+        }
+    }
+
+    private static long [] snapshot(Statistics statistics) {
+        long [] counts = new long[TICKERS.length];
+        for (int i = 0; i < TICKERS.length; i++) {
+            counts[i] = statistics.getTickerCount(TICKERS[i]);
+        }
+        return counts;
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.rocksdb;
+
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+
+import java.util.Map;
+
+/**
+ * Copies the operations of a write batch read from a primary's WAL into a local write batch, mapping
+ * the primary's column family ids onto local handles. The primary's system keys are skipped since the
+ * replica keeps its own. Errors can't be thrown back through the native callback, so they are kept
+ * until {@link #check()} is called.
+ */
+class ReplayHandler extends WriteBatch.Handler {
+
+    private final Map<Integer, ColumnFamilyHandle> handles;
+    private final int defaultId;
+    private final WriteBatch target;
+    private RocksDBException error;
+
+    ReplayHandler(Map<Integer, ColumnFamilyHandle> handles, int defaultId, WriteBatch target) {
+        this.handles = handles;
+        this.defaultId = defaultId;
+        this.target = target;
+    }
+
+    void check() throws RocksDBException {
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private interface Operation {
+        void apply(ColumnFamilyHandle handle) throws RocksDBException;
+    }
+
+    private void replay(int columnFamilyId, byte [] key, Operation op) {
+        if (error != null || (columnFamilyId == defaultId && RocksDbDatabaseImpl.isSystemKey(key))) {
+            return;
+        }
+
+        ColumnFamilyHandle handle = handles.get(columnFamilyId);
+        if (handle == null) {
+            error = new RocksDBException("unknown column family id " + columnFamilyId);
+            return;
+        }
+
+        try {
+            op.apply(handle);
+        } catch (RocksDBException e) {
+            error = e;
+        }
+    }
+
+    private void unsupported(String operation) {
+        if (error == null) {
+            error = new RocksDBException("unsupported operation in replicated batch: " + operation);
+        }
+    }
+
+    @Override
+    public void put(int columnFamilyId, byte [] key, byte [] value) {
+        replay(columnFamilyId, key, h -> target.put(h, key, value));
+    }
+
+    @Override
+    public void put(byte [] key, byte [] value) {
+        put(defaultId, key, value);
+    }
+
+    @Override
+    public void delete(int columnFamilyId, byte [] key) {
+        replay(columnFamilyId, key, h -> target.delete(h, key));
+    }
+
+    @Override
+    public void delete(byte [] key) {
+        delete(defaultId, key);
+    }
+
+    @Override
+    public void singleDelete(int columnFamilyId, byte [] key) {
+        replay(columnFamilyId, key, h -> target.singleDelete(h, key));
+    }
+
+    @Override
+    public void singleDelete(byte [] key) {
+        singleDelete(defaultId, key);
+    }
+
+    @Override
+    public void deleteRange(int columnFamilyId, byte [] beginKey, byte [] endKey) {
+        replay(columnFamilyId, beginKey, h -> target.deleteRange(h, beginKey, endKey));
+    }
+
+    @Override
+    public void deleteRange(byte [] beginKey, byte [] endKey) {
+        deleteRange(defaultId, beginKey, endKey);
+    }
+
+    @Override
+    public void merge(int columnFamilyId, byte [] key, byte [] value) {
+        unsupported("merge");
+    }
+
+    @Override
+    public void merge(byte [] key, byte [] value) {
+        unsupported("merge");
+    }
+
+    @Override
+    public void putBlobIndex(int columnFamilyId, byte [] key, byte [] value) {
+        unsupported("putBlobIndex");
+    }
+
+    @Override
+    public void logData(byte [] blob) {
+    }
+
+    @Override
+    public void markBeginPrepare() {
+        unsupported("prepare");
+    }
+
+    @Override
+    public void markEndPrepare(byte [] xid) {
+        unsupported("prepare");
+    }
+
+    @Override
+    public void markNoop(boolean emptyBatch) {
+    }
+
+    @Override
+    public void markRollback(byte [] xid) {
+        unsupported("rollback");
+    }
+
+    @Override
+    public void markCommit(byte [] xid) {
+        unsupported("commit");
+    }
+
+}
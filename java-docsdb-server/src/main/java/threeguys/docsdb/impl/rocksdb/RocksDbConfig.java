@@ -0,0 +1,249 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.rocksdb;
+
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.RateLimiter;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBufferManager;
+import threeguys.docsdb.trace.Tracer;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Settings shared by every RocksDB instance the server opens. Native objects created from them (like the
+ * rate limiter) are shared too, so sharded databases stay within one budget.
+ */
+public class RocksDbConfig {
+
+    // RocksDB's own default, the size of each namespace's cache when no budget is set
+    static final long DEFAULT_BLOCK_CACHE_BYTES = 8L << 20;
+
+    // A namespace's active memtable and the one being flushed, writes to it stall until the flush is done
+    static final int MAX_WRITE_BUFFERS = 2;
+    static final long MIN_WRITE_BUFFER_BYTES = 256 << 10;
+
+    private long backgroundBytesPerSecond;
+    private long memoryBudgetBytes;
+    private double writeBufferRatio = 0.5;
+    private String coldPath;
+    private long fastTierBytes = 10L << 30;
+    private long walTtlSeconds;
+    private Tracer tracer;
+
+    private RateLimiter rateLimiter;
+    private Cache blockCache;
+    private WriteBufferManager writeBufferManager;
+    private final Set<RocksDbDatabaseImpl> databases = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public long getBackgroundBytesPerSecond() {
+        return backgroundBytesPerSecond;
+    }
+
+    /**
+     * Limits flush and compaction I/O, 0 leaves it unlimited. RocksDB applies the limit to the whole
+     * database rather than to individual column families.
+     */
+    public RocksDbConfig setBackgroundBytesPerSecond(long backgroundBytesPerSecond) {
+        this.backgroundBytesPerSecond = backgroundBytesPerSecond;
+        return this;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Caps block cache and memtables of all namespaces together, 0 leaves every column family with
+     * RocksDB's own defaults. Memtable memory is charged against the block cache, so the cache shrinks
+     * as memtables grow and the total stays close to the budget however many namespaces there are.
+     */
+    public RocksDbConfig setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        return this;
+    }
+
+    public double getWriteBufferRatio() {
+        return writeBufferRatio;
+    }
+
+    /**
+     * The share of the memory budget memtables may take before the largest ones are flushed.
+     */
+    public RocksDbConfig setWriteBufferRatio(double writeBufferRatio) {
+        if (writeBufferRatio <= 0 || writeBufferRatio > 1) {
+            throw new IllegalArgumentException("write buffer ratio must be in (0, 1]");
+        }
+        this.writeBufferRatio = writeBufferRatio;
+        return this;
+    }
+
+    public long getWriteBufferBytes() {
+        return (long) (memoryBudgetBytes * writeBufferRatio);
+    }
+
+    public String getColdPath() {
+        return coldPath;
+    }
+
+    /**
+     * Directory on the capacity tier, null keeps each database in a single directory. Databases are
+     * given their own directory below it, named after their fast tier directory.
+     */
+    public RocksDbConfig setColdPath(String coldPath) {
+        this.coldPath = coldPath;
+        return this;
+    }
+
+    public long getFastTierBytes() {
+        return fastTierBytes;
+    }
+
+    /**
+     * How much of a tiered database's SST data is kept on the fast tier, the oldest and largest sorted
+     * runs go to the cold path once it's full.
+     */
+    public RocksDbConfig setFastTierBytes(long fastTierBytes) {
+        this.fastTierBytes = fastTierBytes;
+        return this;
+    }
+
+    public long getWalTtlSeconds() {
+        return walTtlSeconds;
+    }
+
+    /**
+     * How long archived WAL files are kept so that replicas can catch up from them, 0 (the default) lets
+     * RocksDB delete them as soon as their memtables are flushed. Only needed on a replication primary.
+     */
+    public RocksDbConfig setWalTtlSeconds(long walTtlSeconds) {
+        this.walTtlSeconds = walTtlSeconds;
+        return this;
+    }
+
+    public Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Records RocksDB timings and statistics of traced requests, null (the default) leaves operations
+     * untraced.
+     */
+    public RocksDbConfig setTracer(Tracer tracer) {
+        this.tracer = tracer;
+        return this;
+    }
+
+    synchronized RateLimiter getRateLimiter() {
+        if (backgroundBytesPerSecond > 0 && rateLimiter == null) {
+            rateLimiter = new RateLimiter(backgroundBytesPerSecond);
+        }
+        return rateLimiter;
+    }
+
+    synchronized Cache getBlockCache() {
+        if (memoryBudgetBytes > 0 && blockCache == null) {
+            blockCache = new LRUCache(memoryBudgetBytes);
+        }
+        return blockCache;
+    }
+
+    synchronized WriteBufferManager getWriteBufferManager() {
+        if (memoryBudgetBytes > 0 && writeBufferManager == null) {
+            writeBufferManager = new WriteBufferManager(getWriteBufferBytes(), getBlockCache());
+        }
+        return writeBufferManager;
+    }
+
+    /**
+     * With a budget, the size of every memtable: the write buffer budget split across all column families
+     * of all open databases, each allowed {@link #MAX_WRITE_BUFFERS} memtables plus another buffer's worth
+     * for the arena blocks RocksDB allocates past the size. The WriteBufferManager only triggers flushes
+     * and never stalls writes, so this is what keeps memtables within the budget. With so many namespaces
+     * that memtables would be smaller than {@link #MIN_WRITE_BUFFER_BYTES}, the budget is exceeded instead.
+     */
+    synchronized long getWriteBufferSize() {
+        long columnFamilies = 0;
+        for (RocksDbDatabaseImpl db : databases) {
+            columnFamilies += db.getColumnFamilyCount();
+        }
+        return Math.max(MIN_WRITE_BUFFER_BYTES,
+                getWriteBufferBytes() / (Math.max(1, columnFamilies) * (MAX_WRITE_BUFFERS + 1)));
+    }
+
+    /**
+     * Shares the budget with a database that was just opened.
+     */
+    synchronized void register(RocksDbDatabaseImpl db) throws RocksDBException {
+        if (memoryBudgetBytes > 0) {
+            databases.add(db);
+            resizeWriteBuffers();
+        }
+    }
+
+    /**
+     * Gives a database's share of the budget back before it is closed.
+     */
+    synchronized void unregister(RocksDbDatabaseImpl db) {
+        if (databases.remove(db)) {
+            try {
+                resizeWriteBuffers();
+            } catch (RocksDBException e) {
+                // The others keep their smaller memtables, which is still within the budget
+            }
+        }
+    }
+
+    /**
+     * Applies {@link #getWriteBufferSize()} to every column family, after one was added or a database
+     * was opened or closed.
+     */
+    synchronized void resizeWriteBuffers() throws RocksDBException {
+        long size = getWriteBufferSize();
+        for (RocksDbDatabaseImpl db : databases) {
+            db.setWriteBufferSize(size);
+        }
+    }
+
+    /**
+     * Options for a new namespace. Without a budget every namespace gets a cache of its own, the size RocksDB
+     * would give it. With a budget, index and filter blocks go through the shared cache so they are counted
+     * as well, and memtables get their share of the write buffer budget.
+     */
+    ColumnFamilyOptions newColumnFamilyOptions() {
+        if (memoryBudgetBytes <= 0) {
+            return new ColumnFamilyOptions()
+                    .optimizeUniversalStyleCompaction()
+                    .setTableFormatConfig(new BlockBasedTableConfig().setBlockCache(new LRUCache(DEFAULT_BLOCK_CACHE_BYTES)));
+        }
+
+        return new ColumnFamilyOptions()
+                .optimizeUniversalStyleCompaction(getWriteBufferBytes())
+                .setWriteBufferSize(getWriteBufferSize())
+                .setMaxWriteBufferNumber(MAX_WRITE_BUFFERS)
+                .setMinWriteBufferNumberToMerge(1)
+                .setTableFormatConfig(new BlockBasedTableConfig()
+                        .setBlockCache(getBlockCache())
+                        .setCacheIndexAndFilterBlocks(true)
+                        .setPinL0FilterAndIndexBlocksInCache(true));
+    }
+
+}
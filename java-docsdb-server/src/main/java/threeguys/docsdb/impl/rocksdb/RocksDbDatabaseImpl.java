@@ -18,11 +18,24 @@ package threeguys.docsdb.impl.rocksdb;
 import org.rocksdb.*;
 import org.springframework.boot.json.JsonParser;
 import org.springframework.boot.json.JsonParserFactory;
+import threeguys.docsdb.Batch;
 import threeguys.docsdb.Database;
 import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.Keys;
+import threeguys.docsdb.MemoryMonitor;
+import threeguys.docsdb.admission.WriteStallMonitor;
+import threeguys.docsdb.api.MemoryUsage;
 import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.api.NamespaceMemory;
+import threeguys.docsdb.replication.ReplicationSink;
+import threeguys.docsdb.replication.ReplicationSource;
+import threeguys.docsdb.replication.ReplicationUpdates;
+import threeguys.docsdb.replication.UpdatesUnavailableException;
+import threeguys.docsdb.trace.Tracer;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -30,9 +43,13 @@ import java.util.stream.Collectors;
 
 import static threeguys.docsdb.Database.bytes;
 
-public class RocksDbDatabaseImpl implements Database {
+public class RocksDbDatabaseImpl implements Database, ReplicationSource, ReplicationSink, WriteStallMonitor, MemoryMonitor {
 
     private static final byte [] SYS_NAMESPACES = "sys/namespaces".getBytes(StandardCharsets.UTF_8);
+    private static final byte [] SYS_REPLICATION = "sys/replication".getBytes(StandardCharsets.UTF_8);
+
+    // Stall state is re-read at most this often, it is checked on every write
+    private static final long STALL_CHECK_INTERVAL_NANOS = 100_000_000L;
 
     private static class NamespaceEntry {
 
@@ -49,48 +66,217 @@ public class RocksDbDatabaseImpl implements Database {
 
     }
 
+    // Direct puts need the key off heap as well, keys are small so each thread keeps one buffer around
+    private static final ThreadLocal<ByteBuffer> KEY_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(256));
+
     private final RocksDbShim db;
     private final Map<String, NamespaceEntry> namespaces;
+    private final RocksDbConfig config;
+    private final Tracer tracer;
+
+    private volatile long stallCheckedAt = System.nanoTime() - STALL_CHECK_INTERVAL_NANOS;
+    private volatile boolean stalled;
 
     public RocksDbDatabaseImpl(RocksDbShim db, Map<String, NamespaceEntry> namespaces) {
+        this(db, namespaces, new RocksDbConfig());
+    }
+
+    public RocksDbDatabaseImpl(RocksDbShim db, Map<String, NamespaceEntry> namespaces, RocksDbConfig config) {
         this.db = db;
         this.namespaces = new ConcurrentHashMap<>(namespaces);
+        this.config = config;
+        this.tracer = config.getTracer();
+    }
+
+    private OperationTrace trace(String operation) {
+        return OperationTrace.start(tracer, db.getStatistics(), operation);
     }
 
     @Override
     public byte [] get(String namespace, String key) throws DatabaseException {
+        ColumnFamilyHandle handle = getHandle(namespace);
+        OperationTrace trace = trace("get");
         try {
-            return db.get(getHandle(namespace), bytes(key));
+            return db.get(handle, bytes(key));
         } catch (RocksDBException e) {
             throw new DatabaseException("unable to get key", e);
+        } finally {
+            if (trace != null) {
+                trace.finish();
+            }
         }
     }
 
     @Override
     public Void put(String namespace, String key, byte [] data) throws DatabaseException {
+        ColumnFamilyHandle handle = getHandle(namespace);
+        OperationTrace trace = trace("put");
         try {
-            db.put(getHandle(namespace), bytes(key), data);
+            db.put(handle, bytes(key), data);
+            return null;
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to put key", e);
+        } finally {
+            if (trace != null) {
+                trace.finish();
+            }
+        }
+    }
+
+    @Override
+    public Void put(String namespace, String key, ByteBuffer data) throws DatabaseException {
+        if (!data.isDirect()) {
+            return Database.super.put(namespace, key, data);
+        }
+
+        byte [] keyBytes = bytes(key);
+        ByteBuffer keyBuffer = KEY_BUFFER.get();
+        if (keyBuffer.capacity() < keyBytes.length) {
+            keyBuffer = ByteBuffer.allocateDirect(keyBytes.length);
+            KEY_BUFFER.set(keyBuffer);
+        }
+        keyBuffer.clear();
+        keyBuffer.put(keyBytes).flip();
+
+        ColumnFamilyHandle handle = getHandle(namespace);
+        OperationTrace trace = trace("put");
+        try (WriteOptions writeOptions = new WriteOptions()) {
+            db.put(handle, writeOptions, keyBuffer, data);
             return null;
         } catch (RocksDBException e) {
             throw new DatabaseException("unable to put key", e);
+        } finally {
+            if (trace != null) {
+                trace.finish();
+            }
         }
     }
 
     @Override
     public Void delete(String namespace, String key) throws DatabaseException {
+        ColumnFamilyHandle handle = getHandle(namespace);
+        OperationTrace trace = trace("delete");
         try {
-            db.delete(getHandle(namespace), bytes(key));
+            db.delete(handle, bytes(key));
             return null;
         } catch (RocksDBException e) {
             throw new DatabaseException("unable to delete key", e);
+        } finally {
+            if (trace != null) {
+                trace.finish();
+            }
+        }
+    }
+
+    @Override
+    public Void write(Batch batch) throws DatabaseException {
+        try (WriteBatch writeBatch = new WriteBatch();
+             WriteOptions writeOptions = new WriteOptions()) {
+            for (Batch.Entry entry : batch.getEntries()) {
+                ColumnFamilyHandle handle = getHandle(entry.getTable());
+                if (entry.isDelete()) {
+                    writeBatch.delete(handle, bytes(entry.getKey()));
+                } else {
+                    writeBatch.put(handle, bytes(entry.getKey()), entry.getValue());
+                }
+            }
+            OperationTrace trace = trace("write");
+            try {
+                db.write(writeOptions, writeBatch);
+            } finally {
+                if (trace != null) {
+                    trace.finish();
+                }
+            }
+            return null;
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to write batch", e);
         }
     }
 
+    @Override
+    public Map<String, byte []> multiGet(String namespace, List<String> keys) throws DatabaseException {
+        ColumnFamilyHandle handle = getHandle(namespace);
+        List<ColumnFamilyHandle> handles = Collections.nCopies(keys.size(), handle);
+        List<byte []> rawKeys = keys.stream().map(Database::bytes).collect(Collectors.toList());
+
+        OperationTrace trace = trace("multiget");
+        try {
+            List<byte []> values = db.multiGetAsList(handles, rawKeys);
+            Map<String, byte []> results = new LinkedHashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                if (values.get(i) != null) {
+                    results.put(keys.get(i), values.get(i));
+                }
+            }
+            return results;
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to get keys", e);
+        } finally {
+            if (trace != null) {
+                trace.finish();
+            }
+        }
+    }
+
+    @Override
+    public DatabaseIterator scan(String namespace, String startKey, String endKey) throws DatabaseException {
+        RocksIterator it = db.newIterator(getHandle(namespace));
+        return new RocksDbIterator(it,
+                startKey == null ? null : bytes(startKey),
+                endKey == null ? null : bytes(endKey));
+    }
+
+    @Override
+    public List<String> getSplitKeys(String namespace, int maxParts) throws DatabaseException {
+        ColumnFamilyMetaData md = db.getColumnFamilyMetaData(getHandle(namespace));
+        List<SstFileMetaData> files = new ArrayList<>();
+        md.levels().forEach(level -> files.addAll(level.files()));
+        if (maxParts < 2 || files.size() < 2) {
+            return Collections.emptyList();
+        }
+
+        // Files of different levels overlap, ordering them by their first key still weighs each part of
+        // the key space by how much data it holds
+        files.sort((a, b) -> Keys.compare(a.smallestKey(), b.smallestKey()));
+        long total = files.stream().mapToLong(SstFileMetaData::size).sum();
+
+        List<String> splits = new ArrayList<>();
+        long seen = 0;
+        for (SstFileMetaData file : files) {
+            String key = new String(file.smallestKey(), StandardCharsets.UTF_8);
+            // Split at the file that starts closest to the next target, counting half of it as before the split
+            if (seen > 0 && (2 * seen + file.size()) * maxParts >= 2 * total * (splits.size() + 1)
+                    && (splits.isEmpty() || !splits.get(splits.size() - 1).equals(key))) {
+                splits.add(key);
+                if (splits.size() == maxParts - 1) {
+                    break;
+                }
+            }
+            seen += file.size();
+        }
+        return splits;
+    }
+
     @Override
     public void close() {
+        config.unregister(this);
         db.close();
     }
 
+    int getColumnFamilyCount() {
+        return namespaces.size();
+    }
+
+    void setWriteBufferSize(long bytes) throws RocksDBException {
+        MutableColumnFamilyOptions options = MutableColumnFamilyOptions.builder()
+                .setWriteBufferSize(bytes)
+                .build();
+        for (NamespaceEntry entry : namespaces.values()) {
+            db.setOptions(entry.handle, options);
+        }
+    }
+
     @Override
     public Set<String> getNamespaces() {
         return namespaces.keySet();
@@ -103,6 +289,184 @@ public class RocksDbDatabaseImpl implements Database {
         return new Namespace(new String(md.name(), StandardCharsets.UTF_8), md.size());
     }
 
+    @Override
+    public boolean isWriteStalled(String key) {
+        long now = System.nanoTime();
+        if (now - stallCheckedAt >= STALL_CHECK_INTERVAL_NANOS) {
+            try {
+                stalled = db.getLongProperty("rocksdb.is-write-stopped") > 0
+                        || db.getLongProperty("rocksdb.actual-delayed-write-rate") > 0;
+            } catch (RocksDBException e) {
+                stalled = false;
+            }
+            stallCheckedAt = now;
+        }
+        return stalled;
+    }
+
+    @Override
+    public MemoryUsage getMemoryUsage() throws DatabaseException {
+        try {
+            Map<String, NamespaceMemory> usage = new TreeMap<>();
+            for (Map.Entry<String, NamespaceEntry> entry : namespaces.entrySet()) {
+                if (entry.getKey().startsWith("ns:")) {
+                    ColumnFamilyHandle handle = entry.getValue().handle;
+                    usage.put(entry.getKey().substring(3), new NamespaceMemory(
+                            db.getLongProperty(handle, "rocksdb.size-all-mem-tables"),
+                            db.getLongProperty(handle, "rocksdb.estimate-table-readers-mem")));
+                }
+            }
+
+            long cacheUsage = 0;
+            long pinned = 0;
+            if (config.getMemoryBudgetBytes() > 0) {
+                // The cache is shared, so its usage is the same whichever column family it is read from
+                cacheUsage = db.getLongProperty("rocksdb.block-cache-usage");
+                pinned = db.getLongProperty("rocksdb.block-cache-pinned-usage");
+            } else {
+                // Without a budget every column family has a cache of its own
+                for (NamespaceEntry entry : namespaces.values()) {
+                    cacheUsage += db.getLongProperty(entry.handle, "rocksdb.block-cache-usage");
+                    pinned += db.getLongProperty(entry.handle, "rocksdb.block-cache-pinned-usage");
+                }
+            }
+
+            return new MemoryUsage(config.getMemoryBudgetBytes(), config.getWriteBufferBytes(), cacheUsage, pinned,
+                    usage);
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to read memory usage", e);
+        }
+    }
+
+    /**
+     * SST files of every namespace, with the directory (db path) each one lives in.
+     */
+    public List<LiveFileMetaData> getLiveFiles() {
+        return db.getLiveFilesMetaData();
+    }
+
+    static boolean isSystemKey(byte [] key) {
+        return Arrays.equals(SYS_NAMESPACES, key) || Arrays.equals(SYS_REPLICATION, key);
+    }
+
+    @Override
+    public long getLatestSequenceNumber() {
+        return db.getLatestSequenceNumber();
+    }
+
+    @Override
+    public ReplicationUpdates getUpdatesSince(long sequence, int maxBatches) throws DatabaseException {
+        Map<Integer, String> columnFamilies = new HashMap<>();
+        columnFamilies.put(db.getDefaultColumnFamily().getID(), "default");
+        namespaces.forEach((nsKey, entry) -> columnFamilies.put(entry.handle.getID(), nsKey));
+
+        long latest = db.getLatestSequenceNumber();
+        List<ReplicationUpdates.Batch> batches = new ArrayList<>();
+        if (sequence > latest) {
+            return new ReplicationUpdates(latest, columnFamilies, batches);
+        }
+
+        try (TransactionLogIterator it = db.getUpdatesSince(sequence)) {
+            while (it.isValid() && batches.size() < maxBatches) {
+                TransactionLogIterator.BatchResult result = it.getBatch();
+                try (WriteBatch batch = result.writeBatch()) {
+                    batches.add(new ReplicationUpdates.Batch(result.sequenceNumber(), batch.count(), batch.data()));
+                }
+                it.next();
+            }
+            it.status();
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to read updates", e);
+        }
+
+        // RocksDB starts from the oldest WAL it still has when the requested one has been deleted
+        if (batches.isEmpty() || batches.get(0).getSequence() > sequence) {
+            throw new UpdatesUnavailableException("updates since " + sequence + " are no longer in the WAL, "
+                    + "the replica has to be bootstrapped again");
+        }
+
+        return new ReplicationUpdates(latest, columnFamilies, batches);
+    }
+
+    @Override
+    public void createCheckpoint(String path) throws DatabaseException {
+        try {
+            db.createCheckpoint(path);
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to create checkpoint", e);
+        }
+    }
+
+    @Override
+    public synchronized long getNextSequence() throws DatabaseException {
+        try {
+            byte [] data = db.get(db.getDefaultColumnFamily(), SYS_REPLICATION);
+            if (data != null) {
+                return ByteBuffer.wrap(data).getLong();
+            }
+
+            // Freshly opened from a checkpoint, so the local sequence is the primary's sequence
+            long next = db.getLatestSequenceNumber() + 1;
+            db.put(db.getDefaultColumnFamily(), SYS_REPLICATION, ByteBuffer.allocate(8).putLong(next).array());
+            return next;
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to read replication state", e);
+        }
+    }
+
+    private ColumnFamilyHandle getReplicaHandle(String nsKey) throws DatabaseException {
+        if ("default".equals(nsKey)) {
+            return db.getDefaultColumnFamily();
+        }
+
+        NamespaceEntry entry = namespaces.get(nsKey);
+        if (entry != null) {
+            return entry.handle;
+        } else if (nsKey.startsWith("ns:")) {
+            return getHandle(nsKey.substring(3));
+        }
+        throw new DatabaseException("unknown column family " + nsKey, null);
+    }
+
+    @Override
+    public synchronized long apply(ReplicationUpdates updates) throws DatabaseException {
+        long next = getNextSequence();
+
+        Map<Integer, ColumnFamilyHandle> handles = new HashMap<>();
+        for (Map.Entry<Integer, String> cf : updates.getColumnFamilies().entrySet()) {
+            handles.put(cf.getKey(), getReplicaHandle(cf.getValue()));
+        }
+        int defaultId = updates.getColumnFamilies().entrySet().stream()
+                .filter(e -> "default".equals(e.getValue()))
+                .map(Map.Entry::getKey)
+                .findFirst().orElse(0);
+
+        try (WriteOptions writeOptions = new WriteOptions()) {
+            for (ReplicationUpdates.Batch batch : updates.getBatches()) {
+                if (batch.getSequence() < next) {
+                    continue;
+                } else if (batch.getSequence() > next) {
+                    throw new DatabaseException("updates " + next + " to " + (batch.getSequence() - 1)
+                            + " are no longer available, the replica must be bootstrapped again", null);
+                }
+
+                next = batch.getSequence() + batch.getCount();
+                try (WriteBatch source = new WriteBatch(batch.getData());
+                     WriteBatch target = new WriteBatch();
+                     ReplayHandler handler = new ReplayHandler(handles, defaultId, target)) {
+                    source.iterate(handler);
+                    handler.check();
+                    target.put(db.getDefaultColumnFamily(), SYS_REPLICATION, ByteBuffer.allocate(8).putLong(next).array());
+                    db.write(writeOptions, target);
+                }
+            }
+        } catch (RocksDBException e) {
+            throw new DatabaseException("unable to apply updates", e);
+        }
+
+        return next;
+    }
+
     private String escape(String value) {
         return value.replace("\"", "\\\"");
     }
@@ -126,7 +490,7 @@ public class RocksDbDatabaseImpl implements Database {
             synchronized (this) {
                 try {
                     if (!namespaces.containsKey(nsKey)) {
-                        ColumnFamilyOptions cfOpts = new ColumnFamilyOptions().optimizeUniversalStyleCompaction();
+                        ColumnFamilyOptions cfOpts = config.newColumnFamilyOptions();
                         ColumnFamilyDescriptor cfd = new ColumnFamilyDescriptor(bytes(nsKey), cfOpts);
 
                         Map<String, String> tableList = readNamespaceState(db);
@@ -143,6 +507,7 @@ public class RocksDbDatabaseImpl implements Database {
 
                         // Add it to our list
                         namespaces.put(nsKey, new NamespaceEntry(namespace, handle));
+                        config.resizeWriteBuffers();
                     }
                 } catch (RocksDBException e) {
                     throw new DatabaseException("Could not get namespace", e);
@@ -174,19 +539,32 @@ public class RocksDbDatabaseImpl implements Database {
                 .collect(Collectors.toMap(Map.Entry::getKey, (e) -> e.getValue().toString()));
     }
 
-    private static List<ColumnFamilyDescriptor> mapDescriptors(Map<String, String> states) {
-        final ColumnFamilyOptions cfOpts = new ColumnFamilyOptions().optimizeUniversalStyleCompaction();
+    private static List<ColumnFamilyDescriptor> mapDescriptors(Map<String, String> states, RocksDbConfig config) {
+        // Options of their own, without a budget they each carry the column family's cache
         return states.keySet().stream()
-                .map(s -> new ColumnFamilyDescriptor(bytes(s), cfOpts))
+                .map(s -> new ColumnFamilyDescriptor(bytes(s), config.newColumnFamilyOptions()))
                 .collect(Collectors.toList());
     }
 
-    private static ColumnFamilyDescriptor defaultColumnFamily() {
-        final ColumnFamilyOptions cfOpts = new ColumnFamilyOptions().optimizeUniversalStyleCompaction();
+    private static ColumnFamilyDescriptor defaultColumnFamily(RocksDbConfig config) {
+        final ColumnFamilyOptions cfOpts = config.newColumnFamilyOptions();
         return new ColumnFamilyDescriptor(bytes("default"), cfOpts);
     }
 
-    public static Database openDatabase(String path) throws DatabaseException {
+    public static RocksDbDatabaseImpl openDatabase(String path) throws DatabaseException {
+        return openDatabase(path, new RocksDbConfig());
+    }
+
+    public static RocksDbDatabaseImpl openDatabase(String path, RocksDbConfig config) throws DatabaseException {
+        return openDatabase(path, config, Collections.emptyList());
+    }
+
+    /**
+     * Opens a database whose SST files are spread over dbPaths. RocksDB fills the paths in order up to
+     * their target size, so the first one holds the newest data and the last one everything that
+     * doesn't fit before it. The list must not change once the database holds data.
+     */
+    public static RocksDbDatabaseImpl openDatabase(String path, RocksDbConfig config, List<DbPath> dbPaths) throws DatabaseException {
         try {
 
             Map<String, String> tableState;
@@ -194,19 +572,34 @@ public class RocksDbDatabaseImpl implements Database {
             List<ColumnFamilyHandle> handles = new ArrayList<>();
 
             if (new File(path + "/CURRENT").isFile()) {
-                try (final RocksDB db = RocksDB.openReadOnly(path)) {
+                try (final Options readOpts = new Options().setDbPaths(dbPaths);
+                     final RocksDB db = RocksDB.openReadOnly(readOpts, path)) {
                     tableState = readNamespaceState(new RocksDbShim(db));
-                    descriptors = mapDescriptors(tableState);
+                    descriptors = mapDescriptors(tableState, config);
                 }
             } else {
                 tableState = new HashMap<>();
                 tableState.put("default", NamespaceEntry.LIVE);
-                descriptors = Collections.singletonList(defaultColumnFamily());
+                descriptors = Collections.singletonList(defaultColumnFamily(config));
             }
 
+            final Statistics statistics = new Statistics();
             final DBOptions opts = new DBOptions()
                     .setCreateIfMissing(true)
-                    .setStatistics(new Statistics());
+                    .setWalTtlSeconds(config.getWalTtlSeconds())
+                    .setStatistics(statistics);
+
+            if (config.getRateLimiter() != null) {
+                opts.setRateLimiter(config.getRateLimiter());
+            }
+
+            if (!dbPaths.isEmpty()) {
+                opts.setDbPaths(dbPaths);
+            }
+
+            if (config.getWriteBufferManager() != null) {
+                opts.setWriteBufferManager(config.getWriteBufferManager());
+            }
 
             RocksDB db = RocksDB.open(opts, path, descriptors, handles);
 
@@ -220,7 +613,14 @@ public class RocksDbDatabaseImpl implements Database {
                 namespaces.put(name, new NamespaceEntry(name, h));
             }
 
-            return new RocksDbDatabaseImpl(new RocksDbShim(db), namespaces);
+            RocksDbDatabaseImpl impl = new RocksDbDatabaseImpl(new RocksDbShim(db, statistics), namespaces, config);
+            try {
+                config.register(impl);
+            } catch (RocksDBException e) {
+                impl.close();
+                throw e;
+            }
+            return impl;
 
         } catch (RocksDBException e) {
             throw new DatabaseException("Error opening database", e);
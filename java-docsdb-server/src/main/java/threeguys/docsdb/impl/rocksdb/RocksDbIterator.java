@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.rocksdb;
+
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.Keys;
+import threeguys.docsdb.UncheckedDatabaseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+public class RocksDbIterator implements DatabaseIterator {
+
+    private final RocksIterator it;
+    private final byte [] endKey;
+
+    public RocksDbIterator(RocksIterator it, byte [] startKey, byte [] endKey) {
+        this.it = it;
+        this.endKey = endKey;
+
+        if (startKey == null) {
+            it.seekToFirst();
+        } else {
+            it.seek(startKey);
+        }
+    }
+
+    /**
+     * An iterator also stops being valid when reading fails, which must not look like the end of the range.
+     */
+    @Override
+    public boolean hasNext() {
+        if (!it.isValid()) {
+            try {
+                it.status();
+            } catch (RocksDBException e) {
+                throw new UncheckedDatabaseException(new DatabaseException("scan failed", e));
+            }
+            return false;
+        }
+        return endKey == null || Keys.compare(it.key(), endKey) < 0;
+    }
+
+    @Override
+    public Map.Entry<String, byte []> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Map.Entry<String, byte []> entry = new AbstractMap.SimpleImmutableEntry<>(
+                new String(it.key(), StandardCharsets.UTF_8), it.value());
+        it.next();
+        return entry;
+    }
+
+    @Override
+    public void close() {
+        it.close();
+    }
+
+}
@@ -17,22 +17,46 @@ package threeguys.docsdb.impl.rocksdb;
 
 import org.rocksdb.*;
 
+import java.nio.ByteBuffer;
+import java.util.List;
+
 public class RocksDbShim implements AutoCloseable {
 
     private final RocksDB db;
+    private final Statistics statistics;
 
     public RocksDbShim(RocksDB db) {
+        this(db, null);
+    }
+
+    public RocksDbShim(RocksDB db, Statistics statistics) {
         this.db = db;
+        this.statistics = statistics;
+    }
+
+    /**
+     * The statistics the database was opened with, or null.
+     */
+    public Statistics getStatistics() {
+        return statistics;
     }
 
     public ColumnFamilyHandle createColumnFamily(ColumnFamilyDescriptor columnFamilyDescriptor) throws RocksDBException {
         return db.createColumnFamily(columnFamilyDescriptor);
     }
 
+    public void setOptions(ColumnFamilyHandle columnFamilyHandle, MutableColumnFamilyOptions options) throws RocksDBException {
+        db.setOptions(columnFamilyHandle, options);
+    }
+
     public void put(ColumnFamilyHandle columnFamilyHandle, byte[] key, byte[] value) throws RocksDBException {
         db.put(columnFamilyHandle, key, value);
     }
 
+    public void put(ColumnFamilyHandle columnFamilyHandle, WriteOptions writeOptions, ByteBuffer key, ByteBuffer value) throws RocksDBException {
+        db.put(columnFamilyHandle, writeOptions, key, value);
+    }
+
     public void delete(ColumnFamilyHandle columnFamilyHandle, byte[] key) throws RocksDBException {
         db.delete(columnFamilyHandle, key);
     }
@@ -41,6 +65,44 @@ public class RocksDbShim implements AutoCloseable {
         return db.get(columnFamilyHandle, key);
     }
 
+    public List<byte[]> multiGetAsList(List<ColumnFamilyHandle> columnFamilyHandles, List<byte[]> keys) throws RocksDBException {
+        return db.multiGetAsList(columnFamilyHandles, keys);
+    }
+
+    public RocksIterator newIterator(ColumnFamilyHandle columnFamilyHandle) {
+        return db.newIterator(columnFamilyHandle);
+    }
+
+    public void write(WriteOptions writeOptions, WriteBatch batch) throws RocksDBException {
+        db.write(writeOptions, batch);
+    }
+
+    public long getLatestSequenceNumber() {
+        return db.getLatestSequenceNumber();
+    }
+
+    public TransactionLogIterator getUpdatesSince(long sequenceNumber) throws RocksDBException {
+        return db.getUpdatesSince(sequenceNumber);
+    }
+
+    public void createCheckpoint(String path) throws RocksDBException {
+        try (Checkpoint checkpoint = Checkpoint.create(db)) {
+            checkpoint.createCheckpoint(path);
+        }
+    }
+
+    public long getLongProperty(String property) throws RocksDBException {
+        return db.getLongProperty(property);
+    }
+
+    public long getLongProperty(ColumnFamilyHandle columnFamilyHandle, String property) throws RocksDBException {
+        return db.getLongProperty(columnFamilyHandle, property);
+    }
+
+    public List<LiveFileMetaData> getLiveFilesMetaData() {
+        return db.getLiveFilesMetaData();
+    }
+
     public ColumnFamilyMetaData getColumnFamilyMetaData(ColumnFamilyHandle columnFamilyHandle) {
         return db.getColumnFamilyMetaData(columnFamilyHandle);
     }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.sharded;
+
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.Keys;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import static threeguys.docsdb.Database.bytes;
+
+/**
+ * Merges several key-ordered iterators (one per shard) into a single key-ordered iterator. Shards
+ * never share a key so no de-duplication is needed.
+ */
+public class MergingIterator implements DatabaseIterator {
+
+    private static class Head implements Comparable<Head> {
+
+        final DatabaseIterator source;
+        Map.Entry<String, byte []> entry;
+        byte [] key;
+
+        Head(DatabaseIterator source) {
+            this.source = source;
+        }
+
+        boolean advance() {
+            if (!source.hasNext()) {
+                return false;
+            }
+            entry = source.next();
+            key = bytes(entry.getKey());
+            return true;
+        }
+
+        @Override
+        public int compareTo(Head o) {
+            return Keys.compare(key, o.key);
+        }
+
+    }
+
+    private final List<DatabaseIterator> sources;
+    private final PriorityQueue<Head> heads;
+
+    public MergingIterator(List<DatabaseIterator> sources) {
+        this.sources = sources;
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()));
+        try {
+            for (DatabaseIterator source : sources) {
+                Head head = new Head(source);
+                if (head.advance()) {
+                    heads.add(head);
+                }
+            }
+        } catch (RuntimeException e) {
+            // The caller never gets an iterator to close, so the sources it handed over are closed here
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Map.Entry<String, byte []> next() {
+        Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+
+        Map.Entry<String, byte []> entry = head.entry;
+        if (head.advance()) {
+            heads.add(head);
+        }
+        return entry;
+    }
+
+    @Override
+    public void close() {
+        sources.forEach(DatabaseIterator::close);
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.sharded;
+
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.DatabaseSupplier;
+import threeguys.docsdb.Keys;
+import threeguys.docsdb.MemoryMonitor;
+import threeguys.docsdb.admission.WriteStallMonitor;
+import threeguys.docsdb.api.MemoryUsage;
+import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static threeguys.docsdb.Database.bytes;
+
+/**
+ * Hash-partitions the keys of every namespace across a fixed list of independent databases, each of
+ * which has its own WAL, memtables and compaction threads. The shard a key lives on depends on the
+ * number of shards, so the same list of paths (in the same order) must be used every time the
+ * database is opened. Each shard records its position in a SHARD file the first time it is opened and
+ * refuses to open anywhere else. Batches are split by shard, each part is atomic but the batch as a
+ * whole is not.
+ */
+public class ShardedDatabaseImpl implements Database, WriteStallMonitor, MemoryMonitor {
+
+    static final String MANIFEST = "SHARD";
+
+    private final List<Database> shards;
+    private final ExecutorService executor;
+
+    public ShardedDatabaseImpl(List<Database> shards, ExecutorService executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.executor = executor;
+    }
+
+    static int hash(String key) {
+        // murmur3 finalizer, spreads String.hashCode() so that similar keys land on different shards
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    int shardIndex(String key) {
+        return Math.floorMod(hash(key), shards.size());
+    }
+
+    Database shardFor(String key) {
+        return shards.get(shardIndex(key));
+    }
+
+    private <T> List<T> fanOut(List<DatabaseSupplier<T>> tasks) throws DatabaseException {
+        if (tasks.size() == 1) {
+            return Collections.singletonList(tasks.get(0).get());
+        }
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (DatabaseSupplier<T> task : tasks) {
+            futures.add(executor.submit(task::get));
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("interrupted waiting for shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof DatabaseException) {
+                throw (DatabaseException) e.getCause();
+            }
+            throw new DatabaseException("shard operation failed", e.getCause());
+        }
+        return results;
+    }
+
+    @Override
+    public Set<String> getNamespaces() {
+        Set<String> namespaces = new HashSet<>();
+        shards.forEach(s -> namespaces.addAll(s.getNamespaces()));
+        return namespaces;
+    }
+
+    @Override
+    public Namespace getMetaData(String table) throws DatabaseException {
+        List<DatabaseSupplier<Namespace>> tasks = new ArrayList<>(shards.size());
+        shards.forEach(s -> tasks.add(() -> s.getMetaData(table)));
+
+        List<Namespace> parts = fanOut(tasks);
+        long size = parts.stream().mapToLong(Namespace::getSize).sum();
+        return new Namespace(parts.get(0).getName(), size);
+    }
+
+    @Override
+    public byte [] get(String table, String key) throws DatabaseException {
+        return shardFor(key).get(table, key);
+    }
+
+    @Override
+    public Void put(String table, String key, byte [] data) throws DatabaseException {
+        return shardFor(key).put(table, key, data);
+    }
+
+    @Override
+    public Void put(String table, String key, ByteBuffer data) throws DatabaseException {
+        return shardFor(key).put(table, key, data);
+    }
+
+    @Override
+    public Void delete(String table, String key) throws DatabaseException {
+        return shardFor(key).delete(table, key);
+    }
+
+    @Override
+    public Void write(Batch batch) throws DatabaseException {
+        Map<Integer, Batch> byShard = new TreeMap<>();
+        for (Batch.Entry entry : batch.getEntries()) {
+            Batch part = byShard.computeIfAbsent(shardIndex(entry.getKey()), i -> new Batch());
+            if (entry.isDelete()) {
+                part.delete(entry.getTable(), entry.getKey());
+            } else {
+                part.put(entry.getTable(), entry.getKey(), entry.getValue());
+            }
+        }
+
+        List<DatabaseSupplier<Void>> tasks = new ArrayList<>(byShard.size());
+        byShard.forEach((index, part) -> tasks.add(() -> shards.get(index).write(part)));
+        fanOut(tasks);
+        return null;
+    }
+
+    @Override
+    public Map<String, byte []> multiGet(String table, List<String> keys) throws DatabaseException {
+        Map<Integer, List<String>> byShard = new TreeMap<>();
+        for (String key : keys) {
+            byShard.computeIfAbsent(shardIndex(key), i -> new ArrayList<>()).add(key);
+        }
+
+        List<DatabaseSupplier<Map<String, byte []>>> tasks = new ArrayList<>(byShard.size());
+        byShard.forEach((index, shardKeys) -> tasks.add(() -> shards.get(index).multiGet(table, shardKeys)));
+
+        Map<String, byte []> found = new HashMap<>();
+        fanOut(tasks).forEach(found::putAll);
+
+        Map<String, byte []> results = new LinkedHashMap<>();
+        for (String key : keys) {
+            byte [] value = found.get(key);
+            if (value != null) {
+                results.put(key, value);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public DatabaseIterator scan(String table, String startKey, String endKey) throws DatabaseException {
+        List<DatabaseIterator> iterators = new ArrayList<>(shards.size());
+        try {
+            for (Database shard : shards) {
+                iterators.add(shard.scan(table, startKey, endKey));
+            }
+        } catch (DatabaseException e) {
+            iterators.forEach(DatabaseIterator::close);
+            throw e;
+        }
+        return new MergingIterator(iterators);
+    }
+
+    @Override
+    public List<String> getSplitKeys(String table, int maxParts) throws DatabaseException {
+        List<DatabaseSupplier<List<String>>> tasks = new ArrayList<>(shards.size());
+        shards.forEach(s -> tasks.add(() -> s.getSplitKeys(table, maxParts)));
+
+        // Every shard covers the whole key space, so the union of their splits is thinned back out
+        TreeSet<byte []> keys = new TreeSet<>(Keys.BYTEWISE);
+        fanOut(tasks).forEach(splits -> splits.forEach(k -> keys.add(bytes(k))));
+        if (maxParts < 2 || keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<byte []> all = new ArrayList<>(keys);
+        List<String> splits = new ArrayList<>();
+        int count = Math.min(maxParts - 1, all.size());
+        for (int i = 1; i <= count; i++) {
+            byte [] key = all.get(i * all.size() / (count + 1));
+            String split = new String(key, StandardCharsets.UTF_8);
+            if (splits.isEmpty() || !splits.get(splits.size() - 1).equals(split)) {
+                splits.add(split);
+            }
+        }
+        return splits;
+    }
+
+    @Override
+    public boolean isWriteStalled(String key) {
+        Database shard = shardFor(key);
+        return shard instanceof WriteStallMonitor && ((WriteStallMonitor) shard).isWriteStalled(key);
+    }
+
+    @Override
+    public MemoryUsage getMemoryUsage() throws DatabaseException {
+        List<MemoryUsage> parts = new ArrayList<>(shards.size());
+        for (Database shard : shards) {
+            if (shard instanceof MemoryMonitor) {
+                parts.add(((MemoryMonitor) shard).getMemoryUsage());
+            }
+        }
+        return MemoryUsage.combine(parts);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        shards.forEach(Database::close);
+    }
+
+    public static Database openDatabase(List<String> paths) throws DatabaseException {
+        return openDatabase(paths, new RocksDbConfig());
+    }
+
+    private static String manifest(int index, int count) {
+        return index + "/" + count + "\n";
+    }
+
+    private static boolean isEmpty(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return true;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+
+    /**
+     * Checks every shard is opened at the position it was created at, before any of them is written to.
+     * A shard without a manifest has to be empty, otherwise there is no telling where its keys belong.
+     */
+    static void checkManifests(List<String> paths) throws DatabaseException {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Path manifest = Paths.get(paths.get(i), MANIFEST);
+            try {
+                if (Files.isRegularFile(manifest)) {
+                    String found = new String(Files.readAllBytes(manifest), StandardCharsets.UTF_8);
+                    if (!found.equals(manifest(i, paths.size()))) {
+                        throw new DatabaseException(paths.get(i) + " is shard " + found.trim() + ", not "
+                                + manifest(i, paths.size()).trim() + ", the paths must not be changed or reordered", null);
+                    }
+                } else if (isEmpty(Paths.get(paths.get(i)))) {
+                    missing.add(i);
+                } else {
+                    throw new DatabaseException(paths.get(i) + " holds data but has no " + MANIFEST
+                            + " file, it can not be opened as shard " + manifest(i, paths.size()).trim(), null);
+                }
+            } catch (IOException e) {
+                throw new DatabaseException("unable to read " + manifest, e);
+            }
+        }
+
+        for (int i : missing) {
+            Path manifest = Paths.get(paths.get(i), MANIFEST);
+            try {
+                Files.createDirectories(manifest.getParent());
+                Files.write(manifest, manifest(i, paths.size()).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new DatabaseException("unable to write " + manifest, e);
+            }
+        }
+    }
+
+    public static Database openDatabase(List<String> paths, RocksDbConfig config) throws DatabaseException {
+        checkManifests(paths);
+
+        List<Database> shards = new ArrayList<>(paths.size());
+        try {
+            for (String path : paths) {
+                shards.add(RocksDbDatabaseImpl.openDatabase(path, config));
+            }
+        } catch (DatabaseException e) {
+            shards.forEach(Database::close);
+            throw e;
+        }
+
+        return new ShardedDatabaseImpl(shards, Executors.newFixedThreadPool(paths.size()));
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.tiered;
+
+import org.rocksdb.DbPath;
+import org.rocksdb.LiveFileMetaData;
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.MemoryMonitor;
+import threeguys.docsdb.TieredStorage;
+import threeguys.docsdb.admission.WriteStallMonitor;
+import threeguys.docsdb.api.MemoryUsage;
+import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.api.TierUsage;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spreads namespaces over a fast and a capacity tier. Tiered namespaces (the default) live in a database
+ * whose db_paths keep the newest sorted runs on the fast path and move the bottom of the tree to the cold
+ * path. RocksDB can't give a column family paths of its own from Java, so namespaces placed entirely on
+ * one tier live in a separate database in that tier's directory. A namespace's placement is the database
+ * that holds it, which that database's namespace metadata records across restarts. A namespace is placed by
+ * its first write or an explicit placement, until then it reads as empty without being created anywhere.
+ */
+public class TieredDatabaseImpl implements Database, TieredStorage, WriteStallMonitor, MemoryMonitor {
+
+    public static final String TIERED = "tiered";
+    public static final String FAST = "fast";
+    public static final String COLD = "cold";
+    public static final List<String> PLACEMENTS = Collections.unmodifiableList(Arrays.asList(TIERED, FAST, COLD));
+
+    private static final DatabaseIterator EMPTY = new DatabaseIterator() {
+        @Override
+        public boolean hasNext() {
+            return false;
+        }
+
+        @Override
+        public Map.Entry<String, byte []> next() {
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final RocksDbConfig config;
+    private final Map<String, String> directories;
+    private final String coldTierPath;
+
+    private final Map<String, RocksDbDatabaseImpl> databases = new ConcurrentHashMap<>();
+    private final Map<String, String> placements = new ConcurrentHashMap<>();
+
+    TieredDatabaseImpl(RocksDbConfig config, Map<String, String> directories, String coldTierPath) {
+        this.config = config;
+        this.directories = new HashMap<>(directories);
+        this.coldTierPath = coldTierPath;
+    }
+
+    private static String normalize(String path) {
+        return Paths.get(path).toAbsolutePath().normalize().toString();
+    }
+
+    private RocksDbDatabaseImpl database(String placement) throws DatabaseException {
+        RocksDbDatabaseImpl db = databases.get(placement);
+        if (db == null) {
+            synchronized (this) {
+                db = databases.get(placement);
+                if (db == null) {
+                    List<DbPath> dbPaths = Collections.emptyList();
+                    if (TIERED.equals(placement)) {
+                        // The last path takes whatever doesn't fit the ones before it, its target is not used
+                        dbPaths = Arrays.asList(
+                                new DbPath(Paths.get(directories.get(TIERED)), config.getFastTierBytes()),
+                                new DbPath(Paths.get(coldTierPath), 0));
+                    }
+
+                    db = RocksDbDatabaseImpl.openDatabase(directories.get(placement), config, dbPaths);
+                    databases.put(placement, db);
+                }
+            }
+        }
+        return db;
+    }
+
+    private Database route(String namespace) throws DatabaseException {
+        return database(placements.computeIfAbsent(namespace, ns -> TIERED));
+    }
+
+    /**
+     * The database holding namespace, or null if it hasn't been placed yet.
+     */
+    private Database placed(String namespace) throws DatabaseException {
+        String placement = placements.get(namespace);
+        return placement == null ? null : database(placement);
+    }
+
+    private void open() throws DatabaseException {
+        new File(config.getColdPath()).mkdirs();
+
+        for (String placement : PLACEMENTS) {
+            if (TIERED.equals(placement) || new File(directories.get(placement), "CURRENT").isFile()) {
+                for (String nsKey : database(placement).getNamespaces()) {
+                    if (nsKey.startsWith("ns:")) {
+                        placements.put(nsKey.substring(3), placement);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getPlacement(String namespace) {
+        return placements.getOrDefault(namespace, TIERED);
+    }
+
+    @Override
+    public String setPlacement(String namespace, String placement) throws DatabaseException {
+        if (!PLACEMENTS.contains(placement)) {
+            throw new IllegalArgumentException("unknown placement " + placement + ", expected one of " + PLACEMENTS);
+        }
+
+        String current = placements.putIfAbsent(namespace, placement);
+        if (current != null && !current.equals(placement)) {
+            throw new PlacementConflictException("namespace " + namespace + " is already placed on " + current);
+        }
+
+        try {
+            // Creates the column family, recording the namespace in the metadata of the database it's placed in
+            database(placement).getMetaData(namespace);
+        } catch (DatabaseException e) {
+            if (current == null) {
+                placements.remove(namespace, placement);
+            }
+            throw e;
+        }
+        return placement;
+    }
+
+    @Override
+    public List<TierUsage> getTierUsage() throws DatabaseException {
+        Map<String, String> tiers = new HashMap<>();
+        tiers.put(normalize(directories.get(TIERED)), FAST);
+        tiers.put(normalize(directories.get(FAST)), FAST);
+        tiers.put(normalize(coldTierPath), COLD);
+        tiers.put(normalize(directories.get(COLD)), COLD);
+
+        Map<String, long []> totals = new HashMap<>();
+        Map<String, Map<String, Long>> namespaces = new HashMap<>();
+        for (String tier : Arrays.asList(FAST, COLD)) {
+            totals.put(tier, new long[2]);
+            namespaces.put(tier, new TreeMap<>());
+        }
+
+        for (RocksDbDatabaseImpl db : databases.values()) {
+            for (LiveFileMetaData file : db.getLiveFiles()) {
+                String tier = tiers.getOrDefault(normalize(file.path()), FAST);
+                totals.get(tier)[0] += file.size();
+                totals.get(tier)[1]++;
+
+                String nsKey = new String(file.columnFamilyName(), StandardCharsets.UTF_8);
+                if (nsKey.startsWith("ns:")) {
+                    namespaces.get(tier).merge(nsKey.substring(3), file.size(), Long::sum);
+                }
+            }
+        }
+
+        return Arrays.asList(
+                new TierUsage(FAST, Arrays.asList(directories.get(TIERED), directories.get(FAST)), config.getFastTierBytes(),
+                        totals.get(FAST)[0], totals.get(FAST)[1], new File(directories.get(TIERED)).getUsableSpace(),
+                        namespaces.get(FAST)),
+                new TierUsage(COLD, Arrays.asList(coldTierPath, directories.get(COLD)), 0,
+                        totals.get(COLD)[0], totals.get(COLD)[1], new File(config.getColdPath()).getUsableSpace(),
+                        namespaces.get(COLD)));
+    }
+
+    @Override
+    public Set<String> getNamespaces() {
+        Set<String> namespaces = new HashSet<>();
+        databases.values().forEach(db -> namespaces.addAll(db.getNamespaces()));
+        return namespaces;
+    }
+
+    @Override
+    public Namespace getMetaData(String table) throws DatabaseException {
+        Database db = placed(table);
+        return db == null ? new Namespace("ns:" + table, 0) : db.getMetaData(table);
+    }
+
+    @Override
+    public byte [] get(String table, String key) throws DatabaseException {
+        Database db = placed(table);
+        return db == null ? null : db.get(table, key);
+    }
+
+    @Override
+    public Void put(String table, String key, byte [] data) throws DatabaseException {
+        return route(table).put(table, key, data);
+    }
+
+    @Override
+    public Void put(String table, String key, ByteBuffer data) throws DatabaseException {
+        return route(table).put(table, key, data);
+    }
+
+    @Override
+    public Void delete(String table, String key) throws DatabaseException {
+        return route(table).delete(table, key);
+    }
+
+    @Override
+    public Void write(Batch batch) throws DatabaseException {
+        // Batches that span placements are split, each part is atomic but the batch as a whole is not
+        Map<Database, Batch> parts = new LinkedHashMap<>();
+        for (Batch.Entry entry : batch.getEntries()) {
+            Batch part = parts.computeIfAbsent(route(entry.getTable()), db -> new Batch());
+            if (entry.isDelete()) {
+                part.delete(entry.getTable(), entry.getKey());
+            } else {
+                part.put(entry.getTable(), entry.getKey(), entry.getValue());
+            }
+        }
+
+        for (Map.Entry<Database, Batch> part : parts.entrySet()) {
+            part.getKey().write(part.getValue());
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, byte []> multiGet(String table, List<String> keys) throws DatabaseException {
+        Database db = placed(table);
+        return db == null ? new LinkedHashMap<>() : db.multiGet(table, keys);
+    }
+
+    @Override
+    public DatabaseIterator scan(String table, String startKey, String endKey) throws DatabaseException {
+        Database db = placed(table);
+        return db == null ? EMPTY : db.scan(table, startKey, endKey);
+    }
+
+    @Override
+    public List<String> getSplitKeys(String table, int maxParts) throws DatabaseException {
+        Database db = placed(table);
+        return db == null ? Collections.emptyList() : db.getSplitKeys(table, maxParts);
+    }
+
+    @Override
+    public boolean isWriteStalled(String key) {
+        return databases.values().stream().anyMatch(db -> db.isWriteStalled(key));
+    }
+
+    @Override
+    public MemoryUsage getMemoryUsage() throws DatabaseException {
+        List<MemoryUsage> parts = new ArrayList<>(databases.size());
+        for (RocksDbDatabaseImpl db : databases.values()) {
+            parts.add(db.getMemoryUsage());
+        }
+        return MemoryUsage.combine(parts);
+    }
+
+    @Override
+    public void close() {
+        databases.values().forEach(Database::close);
+    }
+
+    /**
+     * Opens a tiered database at path. Namespaces placed on the fast tier go next to it in path.fast, the
+     * cold path of the config gets a directory named after path for the bottom of tiered namespaces and
+     * another one with a .cold suffix for namespaces placed on the cold tier.
+     */
+    public static TieredDatabaseImpl openDatabase(String path, RocksDbConfig config) throws DatabaseException {
+        if (config.getColdPath() == null) {
+            throw new IllegalArgumentException("tiered storage needs a cold path");
+        }
+
+        String name = Paths.get(path).toAbsolutePath().normalize().getFileName().toString();
+        Path cold = Paths.get(config.getColdPath());
+
+        Map<String, String> directories = new HashMap<>();
+        directories.put(TIERED, path);
+        directories.put(FAST, path + ".fast");
+        directories.put(COLD, cold.resolve(name + ".cold").toString());
+
+        TieredDatabaseImpl db = new TieredDatabaseImpl(config, directories, cold.resolve(name).toString());
+        try {
+            db.open();
+        } catch (DatabaseException | RuntimeException e) {
+            db.close();
+            throw e;
+        }
+        return db;
+    }
+
+}
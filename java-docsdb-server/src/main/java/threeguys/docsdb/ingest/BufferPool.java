@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.ingest;
+
+import threeguys.docsdb.admission.ThrottledException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recycles direct buffers in power of two size classes, from minSize up to maxSize. Direct buffers are
+ * expensive to allocate and free, and keeping documents off heap avoids humongous allocations for large
+ * ones. Each class keeps at most its share of maxPooledBytes, anything beyond that is left to the GC.
+ * Buffers handed out and not yet released may add up to maxOutstandingBytes, beyond that acquiring one
+ * is throttled so that many large uploads at once can't run the JVM out of direct memory.
+ */
+public class BufferPool {
+
+    private final int minShift;
+    private final List<BlockingQueue<ByteBuffer>> classes;
+    private final long maxOutstandingBytes;
+    private final AtomicLong outstandingBytes = new AtomicLong();
+
+    public BufferPool(int minSize, int maxSize, long maxPooledBytes, long maxOutstandingBytes) {
+        this.minShift = shift(minSize);
+        this.maxOutstandingBytes = maxOutstandingBytes;
+        int maxShift = Math.max(minShift, shift(maxSize));
+
+        int classCount = maxShift - minShift + 1;
+        this.classes = new ArrayList<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            long classSize = 1L << (minShift + i);
+            int capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxPooledBytes / classCount / classSize));
+            classes.add(new ArrayBlockingQueue<>(capacity));
+        }
+    }
+
+    private static int shift(int size) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(1, size) - 1);
+    }
+
+    private int classIndex(int size) {
+        return Math.max(0, shift(size) - minShift);
+    }
+
+    public int getMaxSize() {
+        return 1 << (minShift + classes.size() - 1);
+    }
+
+    public long getMaxOutstandingBytes() {
+        return maxOutstandingBytes;
+    }
+
+    /**
+     * Bytes of the buffers that have been acquired and not released yet.
+     */
+    public long getOutstandingBytes() {
+        return outstandingBytes.get();
+    }
+
+    /**
+     * A cleared buffer with at least size bytes of capacity, which must be given back with
+     * {@link #release(ByteBuffer)}.
+     */
+    public ByteBuffer acquire(int size) throws ThrottledException {
+        if (size > getMaxSize()) {
+            throw new IllegalArgumentException("buffer of " + size + " bytes is larger than the pool allows");
+        }
+
+        int index = classIndex(size);
+        int classSize = 1 << (minShift + index);
+        if (outstandingBytes.addAndGet(classSize) > maxOutstandingBytes) {
+            outstandingBytes.addAndGet(-classSize);
+            throw new ThrottledException("too many documents are being received, try again later");
+        }
+
+        ByteBuffer buffer = classes.get(index).poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(classSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        int index = classIndex(buffer.capacity());
+        if (buffer.isDirect() && index < classes.size() && buffer.capacity() == 1 << (minShift + index)) {
+            outstandingBytes.addAndGet(-buffer.capacity());
+            classes.get(index).offer(buffer);
+        }
+    }
+
+}
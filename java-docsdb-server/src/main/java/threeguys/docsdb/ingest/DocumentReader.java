@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.ingest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import threeguys.docsdb.DatabaseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Streams a request body into a pooled direct buffer. The size limit is checked against the declared
+ * length before anything is read and again as bytes arrive, and the JSON is parsed chunk by chunk as it
+ * comes in, so oversized or malformed documents are rejected without reading them to the end.
+ */
+public class DocumentReader {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final BufferPool pool;
+    private final int maxDocumentBytes;
+    private final boolean validateJson;
+
+    public DocumentReader(BufferPool pool, int maxDocumentBytes, boolean validateJson) {
+        if (maxDocumentBytes > pool.getMaxSize()) {
+            throw new IllegalArgumentException("pool buffers are smaller than the largest document");
+        }
+        if (pool.getMaxOutstandingBytes() < 2L * pool.getMaxSize()) {
+            // Growing a buffer holds the old and the new one for a moment
+            throw new IllegalArgumentException("pool must allow at least twice its largest buffer to be outstanding");
+        }
+        this.pool = pool;
+        this.maxDocumentBytes = maxDocumentBytes;
+        this.validateJson = validateJson;
+    }
+
+    public int getMaxDocumentBytes() {
+        return maxDocumentBytes;
+    }
+
+    private static class Validator {
+
+        final JsonParser parser;
+        final ByteArrayFeeder feeder;
+        int depth;
+        boolean complete;
+
+        Validator() throws IOException {
+            parser = JSON.createNonBlockingByteArrayParser();
+            feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        void feed(byte [] chunk, int length) throws IOException, DatabaseException {
+            feeder.feedInput(chunk, 0, length);
+            drain();
+        }
+
+        void finish() throws IOException, DatabaseException {
+            feeder.endOfInput();
+            drain();
+            if (!complete) {
+                throw new InvalidDocumentException("document is not a complete JSON value", null);
+            }
+        }
+
+        private void drain() throws IOException, DatabaseException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (complete) {
+                    throw new InvalidDocumentException("unexpected data after the JSON document", null);
+                }
+
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                complete = depth == 0;
+            }
+        }
+
+    }
+
+    /**
+     * Reads the whole body into a buffer that is ready to be read from, which must be given back with
+     * {@link #release(ByteBuffer)}. contentLength is negative when it isn't known up front.
+     */
+    public ByteBuffer read(InputStream in, long contentLength) throws DatabaseException, IOException {
+        if (contentLength > maxDocumentBytes) {
+            throw new DocumentTooLargeException("document is " + contentLength + " bytes, the limit is " + maxDocumentBytes);
+        }
+
+        ByteBuffer buffer = pool.acquire(contentLength > 0 ? (int) contentLength : Math.min(CHUNK_SIZE, maxDocumentBytes));
+        try {
+            Validator validator = validateJson ? new Validator() : null;
+            byte [] chunk = new byte[CHUNK_SIZE];
+
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                if (buffer.position() + read > maxDocumentBytes) {
+                    throw new DocumentTooLargeException("document is larger than " + maxDocumentBytes + " bytes");
+                }
+
+                if (buffer.remaining() < read) {
+                    ByteBuffer larger = pool.acquire(Math.min(maxDocumentBytes, Math.max(buffer.capacity() * 2, buffer.position() + read)));
+                    buffer.flip();
+                    larger.put(buffer);
+                    pool.release(buffer);
+                    buffer = larger;
+                }
+
+                if (validator != null) {
+                    validator.feed(chunk, read);
+                }
+                buffer.put(chunk, 0, read);
+            }
+
+            if (validator != null) {
+                validator.finish();
+            }
+
+            buffer.flip();
+            return buffer;
+        } catch (JsonProcessingException e) {
+            pool.release(buffer);
+            throw new InvalidDocumentException("document is not valid JSON: " + e.getOriginalMessage(), e);
+        } catch (DatabaseException | IOException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the same size limit and JSON check as {@link #read(InputStream, long)} to a document that
+     * has already been received in full.
+     */
+    public void validate(byte [] document) throws DatabaseException {
+        if (document.length > maxDocumentBytes) {
+            throw new DocumentTooLargeException("document is " + document.length + " bytes, the limit is " + maxDocumentBytes);
+        }
+        if (!validateJson) {
+            return;
+        }
+
+        try {
+            Validator validator = new Validator();
+            validator.feed(document, document.length);
+            validator.finish();
+        } catch (JsonProcessingException e) {
+            throw new InvalidDocumentException("document is not valid JSON: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new InvalidDocumentException("document is not valid JSON", e);
+        }
+    }
+
+    public void release(ByteBuffer buffer) {
+        pool.release(buffer);
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.query;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import threeguys.docsdb.api.Condition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The conditions of a query compiled against parsed documents, a document matches when every condition
+ * holds. Numbers compare by value whatever their JSON representation, strings compare lexicographically
+ * and range conditions never match values of a different type.
+ */
+public class Filter {
+
+    private interface Test {
+        boolean matches(JsonNode document);
+    }
+
+    private final List<Test> tests;
+
+    private Filter(List<Test> tests) {
+        this.tests = tests;
+    }
+
+    public boolean matches(JsonNode document) {
+        for (Test test : tests) {
+            if (!test.matches(document)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static JsonPointer pointer(String field) throws InvalidQueryException {
+        if (field == null || field.isEmpty()) {
+            throw new InvalidQueryException("a field is required");
+        }
+
+        try {
+            return JsonPointer.compile(field.startsWith("/") ? field : "/" + field.replace("~", "~0").replace("/", "~1").replace('.', '/'));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidQueryException("invalid field " + field);
+        }
+    }
+
+    /**
+     * Compares two values of the same type, null when they can't be ordered against each other.
+     */
+    static Integer compare(JsonNode a, JsonNode b) {
+        if (a.isNumber() && b.isNumber()) {
+            return a.decimalValue().compareTo(b.decimalValue());
+        } else if (a.isTextual() && b.isTextual()) {
+            return a.textValue().compareTo(b.textValue());
+        } else if (a.isBoolean() && b.isBoolean()) {
+            return Boolean.compare(a.booleanValue(), b.booleanValue());
+        }
+        return null;
+    }
+
+    private static Test compile(Condition condition) throws InvalidQueryException {
+        JsonPointer pointer = pointer(condition.getField());
+        JsonNode value = condition.getValue();
+        String op = condition.getOp() == null ? "" : condition.getOp();
+
+        if (Condition.EXISTS.equals(op)) {
+            if (value != null && !value.isBoolean()) {
+                throw new InvalidQueryException("exists takes true or false");
+            }
+            boolean exists = value == null || value.booleanValue();
+            return document -> document.at(pointer).isMissingNode() != exists;
+        }
+
+        if (value == null || value.isMissingNode()) {
+            throw new InvalidQueryException(op + " on " + condition.getField() + " needs a value");
+        }
+
+        if (Condition.EQ.equals(op)) {
+            return document -> {
+                JsonNode field = document.at(pointer);
+                Integer cmp = compare(field, value);
+                return cmp != null ? cmp == 0 : field.equals(value);
+            };
+        }
+
+        if (!value.isNumber() && !value.isTextual()) {
+            throw new InvalidQueryException(op + " compares against a number or a string");
+        }
+
+        switch (op) {
+            case Condition.LT:
+                return document -> {
+                    Integer cmp = compare(document.at(pointer), value);
+                    return cmp != null && cmp < 0;
+                };
+            case Condition.LTE:
+                return document -> {
+                    Integer cmp = compare(document.at(pointer), value);
+                    return cmp != null && cmp <= 0;
+                };
+            case Condition.GT:
+                return document -> {
+                    Integer cmp = compare(document.at(pointer), value);
+                    return cmp != null && cmp > 0;
+                };
+            case Condition.GTE:
+                return document -> {
+                    Integer cmp = compare(document.at(pointer), value);
+                    return cmp != null && cmp >= 0;
+                };
+            default:
+                throw new InvalidQueryException("unknown operator " + op);
+        }
+    }
+
+    public static Filter compile(List<Condition> conditions) throws InvalidQueryException {
+        List<Test> tests = new ArrayList<>(conditions.size());
+        for (Condition condition : conditions) {
+            tests.add(compile(condition));
+        }
+        return new Filter(tests);
+    }
+
+}
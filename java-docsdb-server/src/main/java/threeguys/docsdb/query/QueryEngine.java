@@ -0,0 +1,328 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.query;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.Keys;
+import threeguys.docsdb.UncheckedDatabaseException;
+import threeguys.docsdb.api.AggregateResult;
+import threeguys.docsdb.api.FieldStats;
+import threeguys.docsdb.api.Query;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static threeguys.docsdb.Database.bytes;
+
+/**
+ * Evaluates queries inside the server. A namespace is split into key ranges of roughly equal size
+ * (following SST file boundaries) which are scanned on a pool of query threads. Aggregates are computed
+ * per range and combined, matching documents are streamed as newline delimited JSON in key order: each
+ * range buffers a bounded number of matches until the ranges before it have been written out.
+ */
+public class QueryEngine implements AutoCloseable {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final int QUEUE_SIZE = 256;
+    private static final Object END = new Object();
+
+    private final Database db;
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    public QueryEngine(Database db, int parallelism) {
+        this(db, newExecutor(parallelism), parallelism);
+    }
+
+    public QueryEngine(Database db, ExecutorService executor, int parallelism) {
+        this.db = db;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "docsdb-query-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @FunctionalInterface
+    private interface MatchConsumer {
+        boolean accept(String key, JsonNode document) throws InterruptedException, IOException;
+    }
+
+    private static class Partial {
+
+        final double [] sums;
+        final double [] mins;
+        final double [] maxs;
+        final long [] counts;
+        long scanned;
+        long scannedBytes;
+        long matched;
+
+        Partial(int fields) {
+            sums = new double[fields];
+            mins = new double[fields];
+            maxs = new double[fields];
+            counts = new long[fields];
+            Arrays.fill(mins, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(int field, double value) {
+            counts[field]++;
+            sums[field] += value;
+            mins[field] = Math.min(mins[field], value);
+            maxs[field] = Math.max(maxs[field], value);
+        }
+
+        FieldStats stats(int field) {
+            return counts[field] == 0
+                    ? new FieldStats(0, 0, null, null)
+                    : new FieldStats(counts[field], sums[field], mins[field], maxs[field]);
+        }
+
+    }
+
+    /**
+     * Checks the query up front, so that a bad one is rejected before any results are sent.
+     */
+    public void validate(Query query) throws InvalidQueryException {
+        Filter.compile(query.getWhere());
+        for (String field : query.getAggregate()) {
+            Filter.pointer(field);
+        }
+        if (query.getLimit() < 0) {
+            throw new InvalidQueryException("limit can't be negative");
+        }
+    }
+
+    List<String []> ranges(String namespace, Query query) throws DatabaseException {
+        byte [] start = query.getStart() == null ? null : bytes(query.getStart());
+        byte [] end = query.getEnd() == null ? null : bytes(query.getEnd());
+
+        List<String []> ranges = new ArrayList<>();
+        String lower = query.getStart();
+        for (String split : db.getSplitKeys(namespace, parallelism)) {
+            byte [] key = bytes(split);
+            if ((start == null || Keys.compare(key, start) > 0) && (end == null || Keys.compare(key, end) < 0)) {
+                ranges.add(new String[] { lower, split });
+                lower = split;
+            }
+        }
+        ranges.add(new String[] { lower, query.getEnd() });
+        return ranges;
+    }
+
+    private void scan(String namespace, String [] range, Filter filter, Partial partial, AtomicBoolean cancelled,
+                      MatchConsumer consumer) throws DatabaseException, InterruptedException, IOException {
+        try (DatabaseIterator it = db.scan(namespace, range[0], range[1])) {
+            while (!cancelled.get() && it.hasNext()) {
+                Map.Entry<String, byte []> entry = it.next();
+                partial.scanned++;
+                partial.scannedBytes += entry.getValue().length;
+
+                JsonNode document;
+                try {
+                    document = JSON.readTree(entry.getValue());
+                } catch (IOException e) {
+                    // Not JSON, so there's nothing to match
+                    continue;
+                }
+
+                if (document != null && filter.matches(document)) {
+                    partial.matched++;
+                    if (!consumer.accept(entry.getKey(), document)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static DatabaseException unwrap(Throwable t) {
+        if (t instanceof DatabaseException) {
+            return (DatabaseException) t;
+        } else if (t instanceof UncheckedDatabaseException) {
+            return ((UncheckedDatabaseException) t).getCause();
+        }
+        return new DatabaseException("query failed", t);
+    }
+
+    public AggregateResult aggregate(String namespace, Query query) throws DatabaseException {
+        validate(query);
+        Filter filter = Filter.compile(query.getWhere());
+        List<JsonPointer> fields = new ArrayList<>();
+        for (String field : query.getAggregate()) {
+            fields.add(Filter.pointer(field));
+        }
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<Partial>> futures = new ArrayList<>();
+        for (String [] range : ranges(namespace, query)) {
+            futures.add(executor.submit(() -> {
+                Partial partial = new Partial(fields.size());
+                scan(namespace, range, filter, partial, cancelled, (key, document) -> {
+                    for (int i = 0; i < fields.size(); i++) {
+                        JsonNode value = document.at(fields.get(i));
+                        if (value.isNumber()) {
+                            partial.add(i, value.doubleValue());
+                        }
+                    }
+                    return true;
+                });
+                return partial;
+            }));
+        }
+
+        long scanned = 0;
+        long scannedBytes = 0;
+        long matched = 0;
+        Map<String, FieldStats> stats = new LinkedHashMap<>();
+        try {
+            for (Future<Partial> future : futures) {
+                Partial partial = future.get();
+                scanned += partial.scanned;
+                scannedBytes += partial.scannedBytes;
+                matched += partial.matched;
+                for (int i = 0; i < fields.size(); i++) {
+                    stats.merge(query.getAggregate().get(i), partial.stats(i), FieldStats::add);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("query interrupted", e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } finally {
+            cancelled.set(true);
+        }
+
+        return new AggregateResult(scanned, scannedBytes, matched, stats);
+    }
+
+    private static boolean offer(BlockingQueue<Object> queue, Object item, AtomicBoolean cancelled) throws InterruptedException {
+        while (!cancelled.get()) {
+            if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes one {"key":...,"value":...} line per matching document to out, in key order, and stops after
+     * the query's limit. The returned result has no field statistics.
+     */
+    public AggregateResult stream(String namespace, Query query, OutputStream out) throws DatabaseException, IOException {
+        validate(query);
+        Filter filter = Filter.compile(query.getWhere());
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        List<Partial> partials = new ArrayList<>();
+        for (String [] range : ranges(namespace, query)) {
+            BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+            Partial partial = new Partial(0);
+            queues.add(queue);
+            partials.add(partial);
+
+            executor.execute(() -> {
+                Object last = END;
+                try {
+                    scan(namespace, range, filter, partial, cancelled, (key, document) -> {
+                        Map<String, Object> line = new LinkedHashMap<>();
+                        line.put("key", key);
+                        line.put("value", document);
+                        return offer(queue, JSON.writeValueAsBytes(line), cancelled);
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    last = e;
+                }
+
+                try {
+                    offer(queue, last, cancelled);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        long matched = 0;
+        try {
+            ranges:
+            for (BlockingQueue<Object> queue : queues) {
+                while (true) {
+                    Object next = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        if (executor.isShutdown()) {
+                            throw new DatabaseException("query engine is closed", null);
+                        }
+                        continue;
+                    } else if (next == END) {
+                        break;
+                    } else if (next instanceof Throwable) {
+                        throw unwrap((Throwable) next);
+                    }
+
+                    out.write((byte []) next);
+                    out.write('\n');
+                    matched++;
+                    if (query.getLimit() > 0 && matched >= query.getLimit()) {
+                        break ranges;
+                    }
+                }
+            }
+            out.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("query interrupted", e);
+        } finally {
+            cancelled.set(true);
+        }
+
+        // Ranges after the limit may still be running, so their counts are approximate
+        long scanned = 0;
+        long scannedBytes = 0;
+        for (Partial partial : partials) {
+            scanned += partial.scanned;
+            scannedBytes += partial.scannedBytes;
+        }
+        return new AggregateResult(scanned, scannedBytes, matched, Collections.emptyMap());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+}
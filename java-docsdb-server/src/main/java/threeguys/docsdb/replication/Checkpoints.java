@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Moves checkpoint directories between processes as zip streams.
+ */
+public final class Checkpoints {
+
+    private Checkpoints() {
+    }
+
+    public static void zip(Path dir, OutputStream output) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(output);
+        for (Path file : files) {
+            zip.putNextEntry(new ZipEntry(dir.relativize(file).toString().replace('\\', '/')));
+            Files.copy(file, zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    public static void unzip(InputStream input, Path dir) throws IOException {
+        Path root = dir.toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        ZipInputStream zip = new ZipInputStream(input);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            Path target = root.resolve(entry.getName()).normalize();
+            if (!target.startsWith(root)) {
+                throw new IOException("checkpoint entry outside of target directory: " + entry.getName());
+            }
+
+            if (entry.isDirectory()) {
+                Files.createDirectories(target);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.copy(zip, target);
+            }
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Unzips a checkpoint into dir, which either holds the complete checkpoint afterwards or is left as it
+     * was. The checkpoint is unzipped next to dir, synced to disk and then renamed into place, so an
+     * interrupted download never looks like a database. dir must not exist or be empty.
+     */
+    public static void install(InputStream input, Path dir) throws IOException {
+        Path target = dir.toAbsolutePath().normalize();
+        if (Files.isDirectory(target)) {
+            try (Stream<Path> entries = Files.list(target)) {
+                if (entries.findAny().isPresent()) {
+                    throw new IOException(target + " is not empty, refusing to install a checkpoint over it");
+                }
+            }
+        }
+
+        // Left over from an earlier attempt that died before it could clean up
+        Path temp = target.resolveSibling(target.getFileName() + ".download");
+        delete(temp);
+
+        try {
+            unzip(input, temp);
+            sync(temp);
+            Files.deleteIfExists(target);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            delete(temp);
+            throw e;
+        }
+        syncDirectory(target.getParent());
+    }
+
+    private static void sync(Path dir) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            paths = walk.collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                syncDirectory(path);
+            } else {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        // Makes new entries durable on Linux, other platforms can't open directories and don't need it
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.MemoryMonitor;
+import threeguys.docsdb.api.MemoryUsage;
+import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.api.ReplicationStatus;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read-only copy of a primary that keeps itself up to date by pulling the primary's WAL. Staleness is
+ * the time since the replica was last known to have applied everything the primary had written, reads
+ * are refused once it goes above maxStalenessMillis.
+ */
+public class ReplicaDatabaseImpl implements Database, MemoryMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaDatabaseImpl.class);
+
+    private final Database local;
+    private final ReplicationSink sink;
+    private final ReplicationFetcher fetcher;
+    private final int maxBatches;
+    private final long maxStalenessMillis;
+    private final ScheduledExecutorService executor;
+
+    private volatile long appliedSequence;
+    private volatile long primarySequence;
+    private volatile long caughtUpAt;
+    private volatile String lastError;
+
+    public ReplicaDatabaseImpl(Database local, ReplicationSink sink, ReplicationFetcher fetcher,
+                               int maxBatches, long maxStalenessMillis) throws DatabaseException {
+        this.local = local;
+        this.sink = sink;
+        this.fetcher = fetcher;
+        this.maxBatches = maxBatches;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.appliedSequence = sink.getNextSequence() - 1;
+    }
+
+    public ReplicaDatabaseImpl start(long pollMillis) {
+        executor.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Pulls and applies updates until the replica has caught up with the primary.
+     */
+    public void poll() {
+        try {
+            ReplicationUpdates updates;
+            do {
+                long requestedAt = System.currentTimeMillis();
+                updates = fetcher.fetch(sink.getNextSequence(), maxBatches);
+                long next = sink.apply(updates);
+
+                appliedSequence = next - 1;
+                primarySequence = updates.getLatestSequence();
+                if (next > updates.getLatestSequence()) {
+                    caughtUpAt = requestedAt;
+                }
+                lastError = null;
+            } while (updates.getBatches().size() >= maxBatches && !executor.isShutdown());
+        } catch (IOException | DatabaseException e) {
+            log.warn("replication from primary failed", e);
+            lastError = e.getMessage();
+        }
+    }
+
+    public long getStalenessMillis() {
+        return System.currentTimeMillis() - caughtUpAt;
+    }
+
+    @Override
+    public MemoryUsage getMemoryUsage() throws DatabaseException {
+        if (!(local instanceof MemoryMonitor)) {
+            throw new DatabaseException("the local database does not report memory usage", null);
+        }
+        return ((MemoryMonitor) local).getMemoryUsage();
+    }
+
+    public ReplicationStatus getStatus() {
+        return new ReplicationStatus(ReplicationStatus.REPLICA, appliedSequence, primarySequence,
+                getStalenessMillis(), lastError);
+    }
+
+    private void checkStaleness() throws StaleReplicaException {
+        long staleness = getStalenessMillis();
+        if (maxStalenessMillis > 0 && staleness > maxStalenessMillis) {
+            throw new StaleReplicaException("replica is " + staleness + "ms behind the primary");
+        }
+    }
+
+    private ReadOnlyException readOnly() {
+        return new ReadOnlyException("this is a read-only replica");
+    }
+
+    @Override
+    public Set<String> getNamespaces() {
+        return local.getNamespaces();
+    }
+
+    @Override
+    public Namespace getMetaData(String table) throws DatabaseException {
+        checkStaleness();
+        return local.getMetaData(table);
+    }
+
+    @Override
+    public byte [] get(String table, String key) throws DatabaseException {
+        checkStaleness();
+        return local.get(table, key);
+    }
+
+    @Override
+    public Map<String, byte []> multiGet(String table, List<String> keys) throws DatabaseException {
+        checkStaleness();
+        return local.multiGet(table, keys);
+    }
+
+    @Override
+    public DatabaseIterator scan(String table, String startKey, String endKey) throws DatabaseException {
+        checkStaleness();
+        return local.scan(table, startKey, endKey);
+    }
+
+    @Override
+    public List<String> getSplitKeys(String table, int maxParts) throws DatabaseException {
+        checkStaleness();
+        return local.getSplitKeys(table, maxParts);
+    }
+
+    @Override
+    public Void put(String table, String key, byte [] data) throws DatabaseException {
+        throw readOnly();
+    }
+
+    @Override
+    public Void put(String table, String key, ByteBuffer data) throws DatabaseException {
+        throw readOnly();
+    }
+
+    @Override
+    public Void delete(String table, String key) throws DatabaseException {
+        throw readOnly();
+    }
+
+    @Override
+    public Void write(Batch batch) throws DatabaseException {
+        throw readOnly();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        local.close();
+    }
+
+    /**
+     * Opens the replica at path, bootstrapping it from a checkpoint of the primary if there is no
+     * database there yet, and starts following the primary.
+     */
+    public static ReplicaDatabaseImpl openReplica(String primaryUrl, String path, RocksDbConfig config, int maxBatches,
+                                                  long pollMillis, long maxStalenessMillis) throws DatabaseException {
+        ReplicationClient client = new ReplicationClient(primaryUrl);
+
+        if (!new File(path + "/CURRENT").isFile()) {
+            try {
+                client.downloadCheckpoint(Paths.get(path));
+            } catch (IOException e) {
+                throw new DatabaseException("unable to bootstrap replica from " + primaryUrl, e);
+            }
+        }
+
+        RocksDbDatabaseImpl db = RocksDbDatabaseImpl.openDatabase(path, config);
+        try {
+            return new ReplicaDatabaseImpl(db, db, client::fetchUpdates, maxBatches, maxStalenessMillis)
+                    .start(pollMillis);
+        } catch (DatabaseException e) {
+            db.close();
+            throw e;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+
+/**
+ * Talks to the replication endpoints of a primary.
+ */
+public class ReplicationClient {
+
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    private final String primaryUrl;
+
+    public ReplicationClient(String primaryUrl) {
+        this.primaryUrl = primaryUrl.endsWith("/") ? primaryUrl.substring(0, primaryUrl.length() - 1) : primaryUrl;
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(primaryUrl + path).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+
+        int status = conn.getResponseCode();
+        if (status == HttpURLConnection.HTTP_GONE) {
+            conn.disconnect();
+            throw new IOException("primary no longer has the updates for " + path
+                    + ", bootstrap the replica again from an empty directory");
+        } else if (status != HttpURLConnection.HTTP_OK) {
+            conn.disconnect();
+            throw new IOException("primary returned HTTP " + status + " for " + path);
+        }
+        return conn;
+    }
+
+    public ReplicationUpdates fetchUpdates(long since, int maxBatches) throws IOException {
+        // Not disconnected so that the connection is kept alive between polls
+        HttpURLConnection conn = open("/replication/updates?since=" + since + "&limit=" + maxBatches);
+        try (InputStream in = conn.getInputStream()) {
+            return ReplicationUpdates.readFrom(in);
+        }
+    }
+
+    public void downloadCheckpoint(Path dir) throws IOException {
+        HttpURLConnection conn = open("/replication/checkpoint");
+        try (InputStream in = conn.getInputStream()) {
+            Checkpoints.install(in, dir);
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+}
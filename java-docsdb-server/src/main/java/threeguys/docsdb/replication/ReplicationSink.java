@@ -0,0 +1,36 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import threeguys.docsdb.DatabaseException;
+
+/**
+ * A database that replays updates from a primary.
+ */
+public interface ReplicationSink {
+
+    /**
+     * The primary sequence number of the next batch to apply.
+     */
+    long getNextSequence() throws DatabaseException;
+
+    /**
+     * Applies the batches in order, each one atomically together with the new next sequence, and
+     * returns the new next sequence.
+     */
+    long apply(ReplicationUpdates updates) throws DatabaseException;
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import threeguys.docsdb.DatabaseException;
+
+/**
+ * A database that replicas can follow.
+ */
+public interface ReplicationSource {
+
+    long getLatestSequenceNumber();
+
+    /**
+     * Reads up to maxBatches write batches from the WAL, starting with the batch at sequence.
+     * Returns no batches when sequence is past the end of the log.
+     */
+    ReplicationUpdates getUpdatesSince(long sequence, int maxBatches) throws DatabaseException;
+
+    /**
+     * Writes a consistent, openable copy of the database to path, which must not exist yet.
+     */
+    void createCheckpoint(String path) throws DatabaseException;
+
+}
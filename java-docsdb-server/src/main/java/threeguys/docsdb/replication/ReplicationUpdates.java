@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A run of write batches read from the primary's WAL, along with what a replica needs to replay them:
+ * the primary's latest sequence number and the names of the column families the batches refer to.
+ */
+public class ReplicationUpdates {
+
+    private static final int MAGIC = 0x64626c31; // "dbl1"
+
+    public static class Batch {
+
+        private final long sequence;
+        private final int count;
+        private final byte [] data;
+
+        public Batch(long sequence, int count, byte [] data) {
+            this.sequence = sequence;
+            this.count = count;
+            this.data = data;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public byte [] getData() {
+            return data;
+        }
+
+    }
+
+    private final long latestSequence;
+    private final Map<Integer, String> columnFamilies;
+    private final List<Batch> batches;
+
+    public ReplicationUpdates(long latestSequence, Map<Integer, String> columnFamilies, List<Batch> batches) {
+        this.latestSequence = latestSequence;
+        this.columnFamilies = columnFamilies;
+        this.batches = batches;
+    }
+
+    public long getLatestSequence() {
+        return latestSequence;
+    }
+
+    public Map<Integer, String> getColumnFamilies() {
+        return columnFamilies;
+    }
+
+    public List<Batch> getBatches() {
+        return batches;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeLong(latestSequence);
+
+        out.writeInt(columnFamilies.size());
+        for (Map.Entry<Integer, String> cf : columnFamilies.entrySet()) {
+            byte [] name = cf.getValue().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(cf.getKey());
+            out.writeInt(name.length);
+            out.write(name);
+        }
+
+        out.writeInt(batches.size());
+        for (Batch batch : batches) {
+            out.writeLong(batch.sequence);
+            out.writeInt(batch.count);
+            out.writeInt(batch.data.length);
+            out.write(batch.data);
+        }
+        out.flush();
+    }
+
+    public static ReplicationUpdates readFrom(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a replication stream");
+        }
+        long latestSequence = in.readLong();
+
+        int cfCount = in.readInt();
+        Map<Integer, String> columnFamilies = new HashMap<>();
+        for (int i = 0; i < cfCount; i++) {
+            int id = in.readInt();
+            byte [] name = new byte[in.readInt()];
+            in.readFully(name);
+            columnFamilies.put(id, new String(name, StandardCharsets.UTF_8));
+        }
+
+        int batchCount = in.readInt();
+        List<Batch> batches = new ArrayList<>(batchCount);
+        for (int i = 0; i < batchCount; i++) {
+            long sequence = in.readLong();
+            int count = in.readInt();
+            byte [] data = new byte[in.readInt()];
+            in.readFully(data);
+            batches.add(new Batch(sequence, count, data));
+        }
+
+        return new ReplicationUpdates(latestSequence, columnFamilies, batches);
+    }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import threeguys.docsdb.DatabaseException;
+
+/**
+ * The primary no longer has the WAL a replica asked for, so the replica can only catch up by being
+ * bootstrapped again from a fresh checkpoint.
+ */
+@ResponseStatus(HttpStatus.GONE)
+public class UpdatesUnavailableException extends DatabaseException {
+
+    public UpdatesUnavailableException(String message) {
+        super(message, null);
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.trace;
+
+import threeguys.docsdb.api.SlowRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The most recent slow requests, older ones are dropped once capacity is reached.
+ */
+public class SlowLog {
+
+    private final int capacity;
+    private final ArrayDeque<SlowRequest> entries;
+
+    public SlowLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new ArrayDeque<>(capacity);
+    }
+
+    public synchronized void add(SlowRequest request) {
+        if (entries.size() == capacity) {
+            entries.removeFirst();
+        }
+        entries.addLast(request);
+    }
+
+    /**
+     * Up to limit entries, newest first.
+     */
+    public synchronized List<SlowRequest> getEntries(int limit) {
+        List<SlowRequest> result = new ArrayList<>(Math.min(limit, entries.size()));
+        Iterator<SlowRequest> it = entries.descendingIterator();
+        while (it.hasNext() && result.size() < limit) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+}
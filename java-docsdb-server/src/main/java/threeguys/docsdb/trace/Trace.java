@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.trace;
+
+import threeguys.docsdb.api.SlowRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings and counters collected for one request. Storage threads add to it as well as the request
+ * thread, so everything that touches the maps is synchronized.
+ */
+public class Trace {
+
+    public static final String HTTP = "http";
+
+    private final String method;
+    private final String path;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    public Trace(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public synchronized void time(String phase, long nanos) {
+        timings.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Records the time since startNanos under phase, and returns the current time for the next phase.
+     */
+    public long lap(String phase, long startNanos) {
+        long now = System.nanoTime();
+        time(phase, now - startNanos);
+        return now;
+    }
+
+    public synchronized void count(String counter, long delta) {
+        if (delta != 0) {
+            counters.merge(counter, delta, Long::sum);
+        }
+    }
+
+    /**
+     * Adds everything recorded by another trace, like the one of a storage batch this request was part of.
+     */
+    public void add(Trace other) {
+        Map<String, Long> otherTimings;
+        Map<String, Long> otherCounters;
+        synchronized (other) {
+            otherTimings = new LinkedHashMap<>(other.timings);
+            otherCounters = new LinkedHashMap<>(other.counters);
+        }
+
+        synchronized (this) {
+            otherTimings.forEach((phase, nanos) -> timings.merge(phase, nanos, Long::sum));
+            otherCounters.forEach((counter, delta) -> counters.merge(counter, delta, Long::sum));
+        }
+    }
+
+    synchronized SlowRequest toSlowRequest(long id, int status, long totalNanos) {
+        Map<String, Long> micros = new LinkedHashMap<>();
+        long accounted = 0;
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            micros.put(timing.getKey(), TimeUnit.NANOSECONDS.toMicros(timing.getValue()));
+            if (timing.getKey().indexOf('.') < 0) {
+                accounted += timing.getValue();
+            }
+        }
+        micros.put(HTTP, TimeUnit.NANOSECONDS.toMicros(Math.max(0, totalNanos - accounted)));
+
+        return new SlowRequest(id, method, path, status, startedAt, TimeUnit.NANOSECONDS.toMicros(totalNanos),
+                micros, new LinkedHashMap<>(counters));
+    }
+
+}
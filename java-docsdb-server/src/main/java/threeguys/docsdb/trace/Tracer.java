@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.trace;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows requests through the server and keeps the ones slower than a threshold in a slow log. A
+ * negative threshold disables tracing: components keep a null tracer then, so the only cost left on the
+ * request path is a null check.
+ */
+public class Tracer {
+
+    private final long thresholdNanos;
+    private final SlowLog slowLog;
+    private final ThreadLocal<Trace> current = new ThreadLocal<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    public Tracer(long thresholdMillis, int capacity) {
+        this.thresholdNanos = thresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.slowLog = new SlowLog(capacity);
+    }
+
+    public static Tracer disabled() {
+        return new Tracer(-1, 1);
+    }
+
+    public boolean isEnabled() {
+        return thresholdNanos >= 0;
+    }
+
+    public SlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * The trace of the request the current thread is working on, if any.
+     */
+    public Trace current() {
+        return current.get();
+    }
+
+    /**
+     * Makes trace the current thread's trace and returns the one it replaces, which should be handed
+     * back to {@link #restore(Trace)}.
+     */
+    public Trace bind(Trace trace) {
+        Trace previous = current.get();
+        current.set(trace);
+        return previous;
+    }
+
+    public void restore(Trace previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+
+    public void finish(Trace trace, int status) {
+        long total = trace.getElapsedNanos();
+        if (total >= thresholdNanos) {
+            slowLog.add(trace.toSlowRequest(ids.incrementAndGet(), status, total));
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.wire;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames of the binary protocol. Every frame starts with its length (not counting the length itself)
+ * and the id of the request, which the response carries back so a connection can have many requests
+ * in flight and responses can arrive in any order.
+ *
+ * <pre>
+ * request:  int length | int id | byte op     | payload
+ * response: int length | int id | short status | payload
+ *
+ * GET        ns, key               -> value (status 200) or nothing (404)
+ * PUT        ns, key, value        -> nothing
+ * DELETE     ns, key               -> nothing
+ * MULTI_GET  ns, int count, keys   -> int count, (key, int length, value) for each key found
+ * </pre>
+ *
+ * Strings are an unsigned short length followed by UTF-8, a put's value is the rest of the frame. Status
+ * codes are the ones the REST API answers with, failures carry the error message as UTF-8.
+ */
+public final class Protocol {
+
+    public static final byte GET = 1;
+    public static final byte PUT = 2;
+    public static final byte DELETE = 3;
+    public static final byte MULTI_GET = 4;
+
+    public static final short OK = 200;
+    public static final short NOT_FOUND = 404;
+    public static final short BAD_REQUEST = 400;
+    public static final short SERVER_ERROR = 500;
+
+    public static final int REQUEST_HEADER_BYTES = 4 + 4 + 1;
+    public static final int RESPONSE_HEADER_BYTES = 4 + 4 + 2;
+
+    // Room for the namespace and key of a put on top of the largest document
+    static final int MAX_OVERHEAD_BYTES = 1 << 18;
+
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+
+    private Protocol() {
+    }
+
+    public static byte [] encode(String value) {
+        byte [] data = value.getBytes(StandardCharsets.UTF_8);
+        if (data.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("strings are limited to " + MAX_STRING_BYTES + " bytes");
+        }
+        return data;
+    }
+
+    public static void putString(ByteBuffer buffer, byte [] encoded) {
+        buffer.putShort((short) encoded.length);
+        buffer.put(encoded);
+    }
+
+    /**
+     * @throws BufferUnderflowException if the string runs past the end of the frame
+     */
+    public static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+}
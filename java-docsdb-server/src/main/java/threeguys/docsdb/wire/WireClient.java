@@ -0,0 +1,217 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.wire;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Client for the binary protocol over one connection. Requests are pipelined: they are written as soon as
+ * they are made, from any number of threads, and a reader thread completes their futures as the responses
+ * arrive. Failed requests complete with a {@link WireException}, a broken connection fails everything in
+ * flight with the IOException that broke it.
+ */
+public class WireClient implements AutoCloseable {
+
+    private interface PayloadWriter {
+        void write() throws IOException;
+    }
+
+    private static class Pending {
+
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final Function<ByteBuffer, Object> decoder;
+
+        Pending(Function<ByteBuffer, Object> decoder) {
+            this.decoder = decoder;
+        }
+
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Thread reader;
+    private volatile IOException failure;
+
+    public WireClient(String host, int port) throws IOException {
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+
+        this.reader = new Thread(this::readResponses, "docsdb-wire-client");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> send(byte op, byte [] namespace, Function<ByteBuffer, Object> decoder,
+                                          int payloadBytes, PayloadWriter payload) {
+        Pending request = new Pending(decoder);
+        int id = ids.incrementAndGet();
+        pending.put(id, request);
+
+        try {
+            synchronized (out) {
+                if (failure != null) {
+                    throw failure;
+                }
+                out.writeInt(Protocol.REQUEST_HEADER_BYTES - 4 + 2 + namespace.length + payloadBytes);
+                out.writeInt(id);
+                out.writeByte(op);
+                writeString(namespace);
+                payload.write();
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(id);
+            request.future.completeExceptionally(e);
+        }
+        return (CompletableFuture<T>) request.future;
+    }
+
+    private void writeString(byte [] encoded) throws IOException {
+        out.writeShort(encoded.length);
+        out.write(encoded);
+    }
+
+    private static Object value(ByteBuffer payload) {
+        byte [] value = new byte[payload.remaining()];
+        payload.get(value);
+        return value;
+    }
+
+    public CompletableFuture<byte []> get(String namespace, String key) {
+        byte [] k = Protocol.encode(key);
+        return send(Protocol.GET, Protocol.encode(namespace), WireClient::value, 2 + k.length, () -> writeString(k));
+    }
+
+    public CompletableFuture<Void> put(String namespace, String key, byte [] value) {
+        byte [] k = Protocol.encode(key);
+        return send(Protocol.PUT, Protocol.encode(namespace), payload -> null, 2 + k.length + value.length, () -> {
+            writeString(k);
+            out.write(value);
+        });
+    }
+
+    public CompletableFuture<Void> delete(String namespace, String key) {
+        byte [] k = Protocol.encode(key);
+        return send(Protocol.DELETE, Protocol.encode(namespace), payload -> null, 2 + k.length, () -> writeString(k));
+    }
+
+    /**
+     * Values of the keys that exist, in the order they were asked for.
+     */
+    public CompletableFuture<Map<String, byte []>> multiGet(String namespace, List<String> keys) {
+        List<byte []> encoded = new ArrayList<>(keys.size());
+        int size = 4;
+        for (String key : keys) {
+            byte [] k = Protocol.encode(key);
+            encoded.add(k);
+            size += 2 + k.length;
+        }
+
+        return send(Protocol.MULTI_GET, Protocol.encode(namespace), payload -> {
+            int count = payload.getInt();
+            Map<String, byte []> found = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = Protocol.getString(payload);
+                byte [] value = new byte[payload.getInt()];
+                payload.get(value);
+                found.put(key, value);
+            }
+            return found;
+        }, size, () -> {
+            out.writeInt(encoded.size());
+            for (byte [] k : encoded) {
+                writeString(k);
+            }
+        });
+    }
+
+    private void readResponses() {
+        try {
+            while (true) {
+                int length = in.readInt();
+                int id = in.readInt();
+                short status = in.readShort();
+                byte [] payload = new byte[length - (Protocol.RESPONSE_HEADER_BYTES - 4)];
+                in.readFully(payload);
+
+                Pending request = pending.remove(id);
+                if (request == null) {
+                    continue;
+                }
+
+                if (status == Protocol.OK || status == Protocol.NOT_FOUND) {
+                    try {
+                        request.future.complete(status == Protocol.OK ? request.decoder.apply(ByteBuffer.wrap(payload)) : null);
+                    } catch (RuntimeException e) {
+                        request.future.completeExceptionally(new IOException("malformed response", e));
+                    }
+                } else {
+                    request.future.completeExceptionally(new WireException(status, new String(payload, StandardCharsets.UTF_8)));
+                }
+            }
+        } catch (IOException e) {
+            failAll(e);
+        }
+    }
+
+    private void failAll(IOException e) {
+        synchronized (out) {
+            if (failure == null) {
+                failure = e instanceof EOFException ? new EOFException("connection closed") : e;
+            }
+        }
+        for (Integer id : new ArrayList<>(pending.keySet())) {
+            Pending request = pending.remove(id);
+            if (request != null) {
+                request.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
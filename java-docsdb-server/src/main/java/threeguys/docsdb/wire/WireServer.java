@@ -0,0 +1,427 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.wire;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import threeguys.docsdb.AsyncDatabase;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.Keys;
+import threeguys.docsdb.admission.AdmissionControl;
+import threeguys.docsdb.ingest.DocumentReader;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Serves the binary {@link Protocol} on a single selector thread. Requests are decoded on that thread and
+ * handed to the {@link AsyncDatabase}, so a connection can pipeline as many requests as it likes; the
+ * storage threads queue the responses and the selector thread writes them out. A connection stops being
+ * read while too many of its requests are in flight or too many response bytes are waiting for it.
+ */
+public class WireServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WireServer.class);
+
+    static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_IN_FLIGHT = 1024;
+    private static final long MAX_PENDING_BYTES = 8L << 20;
+    private static final int MAX_GATHER = 64;
+    private static final byte [] EMPTY = new byte[0];
+
+    private class Connection {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+        final Queue<ByteBuffer> out = new ConcurrentLinkedQueue<>();
+        final AtomicLong pendingBytes = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+        ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        volatile boolean closed;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        boolean canAccept() {
+            return inFlight.get() < MAX_IN_FLIGHT && pendingBytes.get() < MAX_PENDING_BYTES;
+        }
+
+        void respond(int id, short status, byte [] payload) {
+            inFlight.decrementAndGet();
+            if (closed) {
+                return;
+            }
+
+            ByteBuffer frame = ByteBuffer.allocate(Protocol.RESPONSE_HEADER_BYTES + payload.length);
+            frame.putInt(frame.capacity() - 4).putInt(id).putShort(status).put(payload).flip();
+            pendingBytes.addAndGet(frame.remaining());
+            out.add(frame);
+            ready.add(this);
+            selector.wakeup();
+        }
+
+        void fail(int id, Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null) {
+                error = error.getCause();
+            }
+
+            short status = Protocol.SERVER_ERROR;
+            ResponseStatus annotation = AnnotationUtils.findAnnotation(error.getClass(), ResponseStatus.class);
+            if (annotation != null) {
+                status = (short) annotation.code().value();
+            } else if (!(error instanceof DatabaseException)) {
+                log.error("request failed", error);
+            }
+
+            String message = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+            respond(id, status, message.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void close() {
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("unable to close connection", e);
+            }
+        }
+
+    }
+
+    private final AsyncDatabase db;
+    private final AdmissionControl admission;
+    private final DocumentReader documents;
+    private final int maxFrameBytes;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public WireServer(int port, AsyncDatabase db, AdmissionControl admission, DocumentReader documents) throws IOException {
+        this.db = db;
+        this.admission = admission;
+        this.documents = documents;
+        this.maxFrameBytes = documents.getMaxDocumentBytes() + Protocol.MAX_OVERHEAD_BYTES;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        try {
+            server.bind(new InetSocketAddress(port));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::run, "docsdb-wire");
+        this.thread.setDaemon(true);
+    }
+
+    public WireServer start() {
+        thread.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+
+                Connection c;
+                while ((c = ready.poll()) != null) {
+                    if (!c.closed) {
+                        service(c);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            write(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                        if (!connection.closed) {
+                            service(connection);
+                        }
+                    } catch (IOException | CancelledKeyException e) {
+                        connection.close();
+                    }
+                }
+            } catch (IOException e) {
+                log.error("wire protocol listener failed", e);
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    private void read(Connection c) throws IOException {
+        if (c.channel.read(c.in) < 0) {
+            c.close();
+        }
+    }
+
+    private void write(Connection c) throws IOException {
+        ByteBuffer [] gather = new ByteBuffer[MAX_GATHER];
+        while (!c.out.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : c.out) {
+                gather[count++] = buffer;
+                if (count == MAX_GATHER) {
+                    break;
+                }
+            }
+
+            c.channel.write(gather, 0, count);
+            for (int i = 0; i < count && !gather[i].hasRemaining(); i++) {
+                c.out.poll();
+                c.pendingBytes.addAndGet(-gather[i].capacity());
+            }
+            if (gather[count - 1].hasRemaining()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decodes whatever complete frames have been read, as far as the connection's limits allow, and
+     * updates what the selector should wait for.
+     */
+    private void service(Connection c) {
+        try {
+            if (!c.out.isEmpty()) {
+                write(c);
+            }
+        } catch (IOException e) {
+            c.close();
+            return;
+        }
+
+        c.in.flip();
+        while (c.canAccept() && c.in.remaining() >= 4) {
+            int length = c.in.getInt(c.in.position());
+            if (length < Protocol.REQUEST_HEADER_BYTES - 4 || length > maxFrameBytes) {
+                log.warn("closing connection that sent a frame of {} bytes", length);
+                c.close();
+                return;
+            }
+
+            if (c.in.remaining() < 4 + length) {
+                if (c.in.capacity() < 4 + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(c.in);
+                    c.in = larger;
+                    c.in.flip();
+                }
+                break;
+            }
+
+            ByteBuffer frame = c.in.slice();
+            frame.limit(4 + length).position(4);
+            c.in.position(c.in.position() + 4 + length);
+            dispatch(c, frame);
+        }
+        c.in.compact();
+        c.in = shrink(c.in);
+
+        int ops = (c.out.isEmpty() ? 0 : SelectionKey.OP_WRITE) | (c.canAccept() ? SelectionKey.OP_READ : 0);
+        if (c.key.isValid() && c.key.interestOps() != ops) {
+            c.key.interestOps(ops);
+        }
+    }
+
+    /**
+     * A read buffer grown for a large frame goes back to the normal size once that frame has been handled,
+     * unless the bytes it holds already belong to another large frame. in must be in write mode.
+     */
+    static ByteBuffer shrink(ByteBuffer in) {
+        if (in.capacity() <= READ_BUFFER_BYTES || in.position() > READ_BUFFER_BYTES
+                || (in.position() >= 4 && 4 + in.getInt(0) > READ_BUFFER_BYTES)) {
+            return in;
+        }
+
+        ByteBuffer smaller = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        in.flip();
+        smaller.put(in);
+        return smaller;
+    }
+
+    private void dispatch(Connection c, ByteBuffer frame) {
+        int id = frame.getInt();
+        c.inFlight.incrementAndGet();
+        try {
+            byte op = frame.get();
+            String namespace = Protocol.getString(frame);
+            switch (op) {
+                case Protocol.GET:
+                    get(c, id, namespace, Protocol.getString(frame));
+                    break;
+                case Protocol.PUT:
+                    String key = Protocol.getString(frame);
+                    byte [] value = new byte[frame.remaining()];
+                    frame.get(value);
+                    put(c, id, namespace, key, value);
+                    break;
+                case Protocol.DELETE:
+                    delete(c, id, namespace, Protocol.getString(frame));
+                    break;
+                case Protocol.MULTI_GET:
+                    int count = frame.getInt();
+                    List<String> keys = new ArrayList<>(Math.min(count, frame.remaining() / 2));
+                    for (int i = 0; i < count; i++) {
+                        keys.add(Protocol.getString(frame));
+                    }
+                    multiGet(c, id, namespace, keys);
+                    break;
+                default:
+                    c.respond(id, Protocol.BAD_REQUEST, ("unknown operation " + op).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            c.respond(id, Protocol.BAD_REQUEST, "malformed request".getBytes(StandardCharsets.UTF_8));
+        } catch (DatabaseException | RuntimeException e) {
+            c.fail(id, e);
+        }
+    }
+
+    private static <T> void whenDone(Connection c, int id, CompletableFuture<T> future, Function<T, byte []> encoder) {
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                c.fail(id, error);
+            } else {
+                c.respond(id, Protocol.OK, encoder.apply(result));
+            }
+        });
+    }
+
+    private void get(Connection c, int id, String namespace, String key) throws DatabaseException {
+        admission.admitRead(namespace);
+        db.get(namespace, key).whenComplete((value, error) -> {
+            if (error != null) {
+                c.fail(id, error);
+            } else if (value == null) {
+                c.respond(id, Protocol.NOT_FOUND, EMPTY);
+            } else {
+                admission.charge(namespace, value.length);
+                c.respond(id, Protocol.OK, value);
+            }
+        });
+    }
+
+    private void put(Connection c, int id, String namespace, String key, byte [] value) throws DatabaseException {
+        documents.validate(value);
+        admission.admitWrite(namespace, key, Keys.utf8Length(key) + value.length);
+        whenDone(c, id, db.put(namespace, key, value), v -> EMPTY);
+    }
+
+    private void delete(Connection c, int id, String namespace, String key) throws DatabaseException {
+        admission.admitWrite(namespace, key, Keys.utf8Length(key));
+        whenDone(c, id, db.delete(namespace, key), v -> EMPTY);
+    }
+
+    private void multiGet(Connection c, int id, String namespace, List<String> keys) throws DatabaseException {
+        admission.admitRead(namespace);
+        whenDone(c, id, db.multiGet(namespace, keys), found -> {
+            List<byte []> encodedKeys = new ArrayList<>(found.size());
+            int size = 4;
+            for (Map.Entry<String, byte []> entry : found.entrySet()) {
+                byte [] encoded = Protocol.encode(entry.getKey());
+                encodedKeys.add(encoded);
+                size += 2 + encoded.length + 4 + entry.getValue().length;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(size).putInt(found.size());
+            int i = 0;
+            for (byte [] value : found.values()) {
+                Protocol.putString(payload, encodedKeys.get(i++));
+                payload.putInt(value.length).put(value);
+            }
+            admission.charge(namespace, size);
+            return payload.array();
+        });
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException e) {
+            log.warn("unable to close wire protocol listener", e);
+        }
+    }
+
+}
@@ -17,9 +17,27 @@ package threeguys.docsdb;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import threeguys.docsdb.admission.AdmissionControl;
+import threeguys.docsdb.admission.ThrottledException;
 import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.api.NamespaceQuota;
+import threeguys.docsdb.async.DirectAsyncDatabase;
+import threeguys.docsdb.trace.Tracer;
+import threeguys.docsdb.ingest.BufferPool;
+import threeguys.docsdb.ingest.DocumentReader;
+import threeguys.docsdb.ingest.DocumentTooLargeException;
+import threeguys.docsdb.ingest.InvalidDocumentException;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,11 +47,37 @@ public class TestNamespacesController {
 
     private Database database;
     private NamespacesController controller;
+    private List<String> stored;
 
     @BeforeEach
-    public void setup() {
+    public void setup() throws DatabaseException {
         database = mock(Database.class);
-        controller = new NamespacesController(database);
+        controller = controller(AdmissionControl.unlimited(), 1 << 20);
+
+        // Documents arrive in pooled buffers that are recycled after the put, so keep a copy of what was written
+        stored = new ArrayList<>();
+        when(database.put(anyString(), anyString(), any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.<ByteBuffer>getArgument(2).duplicate();
+            byte [] value = new byte[buffer.remaining()];
+            buffer.get(value);
+            stored.add(new String(value, StandardCharsets.UTF_8));
+            return null;
+        });
+    }
+
+    private NamespacesController controller(AdmissionControl admission, int maxDocumentBytes) {
+        DocumentReader documents = new DocumentReader(new BufferPool(16, maxDocumentBytes, 1 << 24, 1 << 26),
+                maxDocumentBytes, true);
+        return new NamespacesController(database, new DirectAsyncDatabase(database), admission, documents,
+                Tracer.disabled());
+    }
+
+    private static InputStream body(String json) {
+        return new ByteArrayInputStream(bytes(json));
+    }
+
+    private static long length(String json) {
+        return bytes(json).length;
     }
 
     private Database verifyDb(DatabaseConsumer<Database> verifier) throws DatabaseException{
@@ -60,20 +104,75 @@ public class TestNamespacesController {
     @Test
     public void testGetKey() throws DatabaseException {
         when(database.get(anyString(), anyString())).thenReturn(bytes("what a value!"));
-        assertArrayEquals(bytes("what a value!"), controller.getKey("a-test-ns", "this-is-a-key"));
+        assertArrayEquals(bytes("what a value!"), controller.getKey("a-test-ns", "this-is-a-key").join());
         verifyDb((db) -> db.get(eq("a-test-ns"), eq("this-is-a-key")));
     }
 
     @Test
-    public void testPutKey() throws DatabaseException {
-        assertEquals(NamespacesController.OK, controller.putKey("test-ns", "test-key", bytes("my-value")));
-        verifyDb((db) -> db.put(eq("test-ns"), eq("test-key"), eq(bytes("my-value"))));
+    public void testPutKey() throws DatabaseException, IOException {
+        String value = "{\"my\":\"value\"}";
+        assertEquals(NamespacesController.OK, controller.putKey("test-ns", "test-key", body(value), length(value)).join());
+        verifyDb((db) -> db.put(eq("test-ns"), eq("test-key"), any(ByteBuffer.class)));
+        assertEquals(Collections.singletonList(value), stored);
+    }
+
+    @Test
+    public void testPutKeyChunked() throws DatabaseException, IOException {
+        String value = "[1, 2, 3]";
+        assertEquals(NamespacesController.OK, controller.putKey("test-ns", "chunked", body(value), null).join());
+        assertEquals(Collections.singletonList(value), stored);
+    }
+
+    @Test
+    public void testPutKeyRejected() throws DatabaseException {
+        controller = controller(AdmissionControl.unlimited(), 64);
+
+        String large = "\"" + String.join("", Collections.nCopies(100, "x")) + "\"";
+        assertThrows(DocumentTooLargeException.class, () -> controller.putKey("test-ns", "declared", body(large), length(large)));
+        assertThrows(DocumentTooLargeException.class, () -> controller.putKey("test-ns", "chunked", body(large), null));
+        assertThrows(InvalidDocumentException.class, () -> controller.putKey("test-ns", "broken", body("{\"a\": "), null));
+        assertThrows(InvalidDocumentException.class, () -> controller.putKey("test-ns", "two", body("{} {}"), null));
+        verifyNoInteractions(database);
     }
 
     @Test
     public void testDeleteKey() throws DatabaseException {
-        assertEquals(NamespacesController.OK, controller.deleteKey("test-delete-ns", "target-key"));
+        assertEquals(NamespacesController.OK, controller.deleteKey("test-delete-ns", "target-key").join());
         verifyDb((db) -> db.delete(eq("test-delete-ns"), eq("target-key")));
     }
 
+    @Test
+    public void testGetKeyFailure() throws DatabaseException {
+        when(database.get(anyString(), anyString())).thenThrow(new DatabaseException("test-error", null));
+        CompletionException e = assertThrows(CompletionException.class, () -> controller.getKey("a-test-ns", "a-key").join());
+        assertTrue(e.getCause() instanceof DatabaseException);
+    }
+
+    @Test
+    public void testThrottled() throws DatabaseException, IOException {
+        AdmissionControl admission = AdmissionControl.unlimited();
+        admission.setQuota("limited-ns", new NamespaceQuota(1, 0));
+        controller = controller(admission, 64);
+
+        assertEquals(NamespacesController.OK, controller.putKey("limited-ns", "key-1", body("{}"), 2L).join());
+        assertThrows(ThrottledException.class, () -> controller.putKey("limited-ns", "key-2", body("{}"), 2L));
+        assertThrows(ThrottledException.class, () -> controller.getKey("limited-ns", "key-1"));
+        verifyDb((db) -> db.put(eq("limited-ns"), eq("key-1"), any(ByteBuffer.class)));
+    }
+
+    @Test
+    public void testChargesEncodedKeyBytes() throws DatabaseException, IOException {
+        AdmissionControl admission = mock(AdmissionControl.class);
+        controller = controller(admission, 64);
+
+        // 2 + 3 + 4 bytes in UTF-8, 4 chars in UTF-16
+        String key = "\u00e9\u20ac\ud83d\ude00";
+        assertEquals(9, bytes(key).length);
+        controller.putKey("ns", key, body("{}"), 2L).join();
+        controller.deleteKey("ns", key).join();
+        verify(admission).admitWrite("ns", key, 9 + 2);
+        verify(admission).admitWrite("ns", key, 9);
+        assertEquals(bytes("a\ud83d").length, Keys.utf8Length("a\ud83d"));
+    }
+
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb;
+
+import org.apache.catalina.connector.Connector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.tomcat.TomcatConnectorCustomizer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import threeguys.docsdb.trace.Tracer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestServer {
+
+    private static final long CONTAINER_TIMEOUT_MILLIS = 500;
+
+    // Stands in for a long scan, with the container's async timeout cut down so the test doesn't take 30s
+    @Configuration
+    @RestController
+    public static class SlowStream {
+
+        @Bean
+        public TomcatConnectorCustomizer shortAsyncTimeout() {
+            return (Connector connector) -> connector.setAsyncTimeout(CONTAINER_TIMEOUT_MILLIS);
+        }
+
+        @RequestMapping(path = "/test/slow-stream", method = RequestMethod.GET, produces = "application/x-ndjson")
+        public StreamingResponseBody slowStream() {
+            return out -> {
+                for (int i = 0; i < 4; i++) {
+                    out.write(("{\"line\":" + i + "}\n").getBytes("UTF-8"));
+                    out.flush();
+                    try {
+                        Thread.sleep(CONTAINER_TIMEOUT_MILLIS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+            };
+        }
+
+    }
+
+    @Test
+    public void streamsOutliveTheContainerTimeout(@TempDir Path tempDir) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("server.port", "0");
+        properties.setProperty("DOCSDB_PATH", tempDir.resolve("db").toString());
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Server.class, SlowStream.class)
+                .properties(properties)
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:" + port + "/test/slow-stream").openConnection();
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = conn.getInputStream()) {
+                byte [] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    body.write(buffer, 0, read);
+                }
+            }
+
+            assertEquals(200, conn.getResponseCode());
+            assertTrue(body.toString("UTF-8").endsWith("{\"line\":3}\n"), body.toString("UTF-8"));
+        }
+    }
+
+    private long walTtlSeconds(long configured, String path, String replicaOf, String coldPath) {
+        return new Server().rocksDbConfig(new Tracer(-1, 10), 0, 0, 0.5, coldPath, 0, configured, path, replicaOf)
+                .getWalTtlSeconds();
+    }
+
+    @Test
+    public void keepsWalForReplicas() {
+        assertEquals(Server.DEFAULT_WAL_TTL_SECONDS, walTtlSeconds(-1, "docs.db", "", ""));
+        assertEquals(0, walTtlSeconds(0, "docs.db", "", ""));
+        assertEquals(60, walTtlSeconds(60, "docs.db", "", ""));
+
+        // Nothing replicates from these
+        assertEquals(0, walTtlSeconds(-1, "docs.db", "http://primary:8080", ""));
+        assertEquals(0, walTtlSeconds(-1, "shard-0,shard-1", "", ""));
+        assertEquals(0, walTtlSeconds(-1, "docs.db", "", "cold"));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.admission;
+
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.api.NamespaceQuota;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAdmissionControl {
+
+    @Test
+    public void requestQuotaIsPerNamespace() throws ThrottledException {
+        AdmissionControl admission = new AdmissionControl(new NamespaceQuota(2, 0), key -> false);
+
+        admission.admitRead("noisy");
+        admission.admitWrite("noisy", "key", 10);
+        assertThrows(ThrottledException.class, () -> admission.admitRead("noisy"));
+
+        admission.admitRead("quiet");
+        admission.admitRead("quiet");
+    }
+
+    @Test
+    public void byteQuota() throws ThrottledException {
+        AdmissionControl admission = new AdmissionControl(new NamespaceQuota(0, 1000), key -> false);
+
+        admission.admitWrite("ns", "key", 5000);
+        assertThrows(ThrottledException.class, () -> admission.admitWrite("ns", "key", 1));
+        assertThrows(ThrottledException.class, () -> admission.admitRead("ns"));
+
+        admission.admitRead("other");
+        admission.charge("other", 2000);
+        assertThrows(ThrottledException.class, () -> admission.admitRead("other"));
+    }
+
+    @Test
+    public void overrides() throws ThrottledException {
+        AdmissionControl admission = new AdmissionControl(NamespaceQuota.UNLIMITED, key -> false);
+        assertEquals(NamespaceQuota.UNLIMITED, admission.getQuota("ns"));
+
+        admission.setQuota("ns", new NamespaceQuota(1, 0));
+        assertEquals(new NamespaceQuota(1, 0), admission.getQuota("ns"));
+        admission.admitRead("ns");
+        assertThrows(ThrottledException.class, () -> admission.admitRead("ns"));
+
+        admission.resetQuota("ns");
+        assertEquals(NamespaceQuota.UNLIMITED, admission.getQuota("ns"));
+        admission.admitRead("ns");
+    }
+
+    @Test
+    public void evictsIdleNamespaces() throws ThrottledException {
+        AtomicLong now = new AtomicLong();
+        AdmissionControl admission = new AdmissionControl(new NamespaceQuota(2, 1000), key -> false, now::get);
+
+        admission.admitRead("debtor");
+        admission.charge("debtor", 5000);
+        for (int i = 0; i < AdmissionControl.MIN_SWEEP_SIZE * 4; i++) {
+            admission.admitRead("ns-" + i);
+        }
+        assertEquals(AdmissionControl.MIN_SWEEP_SIZE * 4 + 1, admission.getTrackedNamespaces());
+
+        // A second later every bucket has refilled except the one still paying off its debt
+        now.addAndGet(1_000_000_000L);
+        admission.admitRead("new");
+        assertEquals(2, admission.getTrackedNamespaces());
+        assertThrows(ThrottledException.class, () -> admission.admitRead("debtor"));
+
+        // Namespaces without a limit never get buckets of their own
+        admission.setQuota("unlimited", NamespaceQuota.UNLIMITED);
+        admission.admitRead("unlimited");
+        assertEquals(2, admission.getTrackedNamespaces());
+    }
+
+    @Test
+    public void shedsWritesWhileStalled() throws ThrottledException {
+        AtomicBoolean stalled = new AtomicBoolean(true);
+        AdmissionControl admission = new AdmissionControl(NamespaceQuota.UNLIMITED, key -> stalled.get());
+
+        assertThrows(ThrottledException.class, () -> admission.admitWrite("ns", "key", 1));
+        admission.admitRead("ns");
+
+        stalled.set(false);
+        admission.admitWrite("ns", "key", 1);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTokenBucket {
+
+    private long now = 0;
+
+    @Test
+    public void refillsOverTime() {
+        TokenBucket bucket = new TokenBucket(10, () -> now);
+
+        assertTrue(bucket.tryAcquire(10));
+        assertFalse(bucket.tryAcquire(1));
+
+        now += 100_000_000L;
+        assertTrue(bucket.tryAcquire(1));
+        assertFalse(bucket.tryAcquire(1));
+
+        // Never holds more than a second's worth
+        now += 10_000_000_000L;
+        assertTrue(bucket.tryAcquire(10));
+        assertFalse(bucket.tryAcquire(1));
+    }
+
+    @Test
+    public void debtIsPaidBack() {
+        TokenBucket bucket = new TokenBucket(100, () -> now);
+
+        bucket.consume(300);
+        assertFalse(bucket.hasTokens());
+
+        now += 2_000_000_000L;
+        assertFalse(bucket.hasTokens());
+
+        now += 1_000_000_000L;
+        assertTrue(bucket.hasTokens());
+    }
+
+    @Test
+    public void unlimited() {
+        TokenBucket bucket = new TokenBucket(0, () -> now);
+        assertTrue(bucket.isUnlimited());
+        bucket.consume(Long.MAX_VALUE / 2);
+        assertTrue(bucket.hasTokens());
+        assertTrue(bucket.tryAcquire(Long.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.async;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.admission.ThrottledException;
+import threeguys.docsdb.api.SlowRequest;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+import threeguys.docsdb.trace.Trace;
+import threeguys.docsdb.trace.Tracer;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestBatchingAsyncDatabase {
+
+    @Test
+    public void coalescesQueuedOperations() throws DatabaseException {
+        Database db = mock(Database.class);
+        Map<String, byte []> found = new HashMap<>();
+        found.put("a", bytes("value-a"));
+        found.put("b", bytes("value-b"));
+        when(db.multiGet(eq("ns"), anyList())).thenReturn(found);
+
+        // Nothing runs until start(), so everything submitted before it is drained in one go
+        BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 1, 100);
+        try {
+            CompletableFuture<byte []> a = async.get("ns", "a");
+            CompletableFuture<byte []> b = async.get("ns", "b");
+            CompletableFuture<byte []> c = async.get("ns", "c");
+            CompletableFuture<Void> put1 = async.put("ns", "d", bytes("value-d"));
+            CompletableFuture<Void> put2 = async.delete("ns", "a");
+            async.start();
+
+            assertArrayEquals(bytes("value-a"), a.join());
+            assertArrayEquals(bytes("value-b"), b.join());
+            assertNull(c.join());
+            put1.join();
+            put2.join();
+
+            verify(db, times(1)).multiGet(eq("ns"), eq(Arrays.asList("a", "b", "c")));
+            verify(db, times(1)).write(any(Batch.class));
+            verifyNoMoreInteractions(db);
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    public void failuresCompleteTheFutures() throws DatabaseException {
+        Database db = mock(Database.class);
+        when(db.get(anyString(), anyString())).thenThrow(new DatabaseException("test-error", null));
+
+        BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 2, 100).start();
+        try {
+            CompletionException e = assertThrows(CompletionException.class, () -> async.get("ns", "key").join());
+            assertEquals("test-error", e.getCause().getMessage());
+        } finally {
+            async.close();
+        }
+
+        assertThrows(CompletionException.class, () -> async.get("ns", "key").join());
+    }
+
+    @Test
+    public void failedWriteDoesntFailItsBatch() throws DatabaseException {
+        Database db = mock(Database.class);
+        doThrow(new DatabaseException("batch-error", null)).when(db).write(any(Batch.class));
+        doThrow(new DatabaseException("bad-key", null)).when(db).put(eq("ns"), eq("bad"), any(byte [].class));
+
+        BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 1, 100);
+        try {
+            CompletableFuture<Void> before = async.put("ns", "a", bytes("value-a"));
+            CompletableFuture<Void> bad = async.put("ns", "bad", bytes("value-bad"));
+            CompletableFuture<Void> after = async.delete("ns", "b");
+            async.start();
+
+            before.join();
+            after.join();
+            CompletionException e = assertThrows(CompletionException.class, bad::join);
+            assertEquals("bad-key", e.getCause().getMessage());
+
+            InOrder order = inOrder(db);
+            order.verify(db).write(any(Batch.class));
+            order.verify(db).put("ns", "a", bytes("value-a"));
+            order.verify(db).put(eq("ns"), eq("bad"), any(byte [].class));
+            order.verify(db).delete("ns", "b");
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    public void callbacksDontBlockStorage() throws Exception {
+        Database db = mock(Database.class);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // Started after the callback is attached, so the callback can't end up running on this thread
+        BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 1, 100);
+        try {
+            CompletableFuture<String> blocked = async.put("ns", "a", bytes("value-a")).thenApply(v -> {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Thread.currentThread().getName();
+            });
+            async.start();
+            entered.await();
+
+            // Written while the first callback is still holding up its completion thread
+            CompletableFuture<Void> next = async.put("ns", "b", bytes("value-b"));
+            verify(db, timeout(5000)).put("ns", "b", bytes("value-b"));
+            assertFalse(next.isDone());
+
+            release.countDown();
+            next.join();
+            assertTrue(blocked.join().startsWith("docsdb-completion-"), blocked.join());
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws DatabaseException {
+        Database db = mock(Database.class);
+
+        BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 1, 100, 2, null);
+        try {
+            CompletableFuture<Void> put1 = async.put("ns", "a", bytes("value-a"));
+            CompletableFuture<Void> put2 = async.put("ns", "b", bytes("value-b"));
+            CompletionException e = assertThrows(CompletionException.class,
+                    () -> async.put("ns", "c", bytes("value-c")).join());
+            assertTrue(e.getCause() instanceof ThrottledException);
+
+            async.start();
+            CompletableFuture.allOf(put1, put2).join();
+            async.put("ns", "c", bytes("value-c")).join();
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    public void pipelinedAgainstRocksDb(@TempDir Path tempDir) throws DatabaseException {
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 4, 64).start()) {
+
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                writes.add(async.put("pipelined", "key-" + i, bytes("value-" + i)));
+            }
+            // Same key, must be applied in order
+            for (int i = 0; i < 100; i++) {
+                writes.add(async.put("pipelined", "counter", bytes("value-" + i)));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+
+            assertArrayEquals(bytes("value-99"), async.get("pipelined", "counter").join());
+            assertArrayEquals(bytes("value-500"), db.get("pipelined", "key-500"));
+
+            Map<String, byte []> found = async.multiGet("pipelined", Arrays.asList("key-7", "nope", "key-3")).join();
+            assertEquals(Arrays.asList("key-7", "key-3"), new ArrayList<>(found.keySet()));
+
+            async.delete("pipelined", "key-7").join();
+            assertNull(async.get("pipelined", "key-7").join());
+        }
+    }
+
+    @Test
+    public void bufferedPutsKeepKeyOrder(@TempDir Path tempDir) throws DatabaseException {
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 1, 64);
+            try {
+                ByteBuffer first = ByteBuffer.allocateDirect(16);
+                first.put(bytes("{\"n\":1}")).flip();
+                ByteBuffer second = ByteBuffer.allocateDirect(16);
+                second.put(bytes("{\"n\":2}")).flip();
+
+                // Queued before the thread starts, so they are written as one batch in submission order
+                CompletableFuture<Void> put1 = async.put("buffered", "key", first);
+                CompletableFuture<Void> delete = async.delete("buffered", "key");
+                CompletableFuture<Void> put2 = async.put("buffered", "other", second);
+                async.start();
+                CompletableFuture.allOf(put1, delete, put2).join();
+
+                assertNull(db.get("buffered", "key"));
+                assertArrayEquals(bytes("{\"n\":2}"), db.get("buffered", "other"));
+
+                // On its own a buffered put is handed to the database as is
+                first.rewind();
+                async.put("buffered", "key", first).join();
+                assertArrayEquals(bytes("{\"n\":1}"), async.get("buffered", "key").join());
+            } finally {
+                async.close();
+            }
+        }
+    }
+
+    @Test
+    public void tracedRequestsGetRunTimings(@TempDir Path tempDir) throws DatabaseException {
+        Tracer tracer = new Tracer(0, 10);
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString(), new RocksDbConfig().setTracer(tracer));
+             BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 1, 64, BatchingAsyncDatabase.DEFAULT_QUEUE_SIZE, tracer).start()) {
+
+            async.put("traced", "untraced", bytes("value")).join();
+
+            Trace trace = new Trace("GET", "/namespace/traced/key");
+            tracer.bind(trace);
+            try {
+                async.put("traced", "key", bytes("value")).join();
+                assertArrayEquals(bytes("value"), async.get("traced", "key").join());
+            } finally {
+                tracer.restore(null);
+            }
+            tracer.finish(trace, 200);
+
+            SlowRequest request = tracer.getSlowLog().getEntries(1).get(0);
+            assertEquals("/namespace/traced/key", request.getPath());
+            assertEquals(Arrays.asList("storage.queue", "storage.rocksdb.put", "storage.rocksdb.get", "http"),
+                    new ArrayList<>(request.getTimingsMicros().keySet()));
+            assertEquals(2, request.getCounters().get("storage_run_size"));
+            assertEquals(1, request.getCounters().get("memtable_hit"));
+        }
+    }
+
+}
@@ -19,10 +19,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.stubbing.Answer;
 import org.rocksdb.*;
+import threeguys.docsdb.Batch;
 import threeguys.docsdb.Database;
 import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.api.MemoryUsage;
 import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.api.NamespaceMemory;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -51,6 +56,8 @@ public class TestRocksDbDatabaseImpl {
 
             impl.delete("a-new-table", "here's a key");
             assertNull(impl.get("a-new-table", "here's a key"));
+
+            assertFalse(impl.isWriteStalled("here's a key"));
         }
     }
 
@@ -120,4 +127,152 @@ public class TestRocksDbDatabaseImpl {
         }
 
     }
+
+    @Test
+    public void multiGetAndScan(@TempDir Path tempDir) throws DatabaseException {
+        try (Database impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            impl.put("scan-ns", "b", bytes("value-b"));
+            impl.put("scan-ns", "a", bytes("value-a"));
+            impl.put("scan-ns", "d", bytes("value-d"));
+            impl.put("scan-ns", "c", bytes("value-c"));
+
+            Map<String, byte []> found = impl.multiGet("scan-ns", Arrays.asList("d", "missing", "a"));
+            assertEquals(Arrays.asList("d", "a"), new ArrayList<>(found.keySet()));
+            assertArrayEquals(bytes("value-d"), found.get("d"));
+            assertArrayEquals(bytes("value-a"), found.get("a"));
+
+            List<String> keys = new ArrayList<>();
+            try (DatabaseIterator it = impl.scan("scan-ns", null, null)) {
+                it.forEachRemaining(e -> keys.add(e.getKey()));
+            }
+            assertEquals(Arrays.asList("a", "b", "c", "d"), keys);
+
+            keys.clear();
+            try (DatabaseIterator it = impl.scan("scan-ns", "b", "d")) {
+                it.forEachRemaining(e -> keys.add(e.getKey()));
+            }
+            assertEquals(Arrays.asList("b", "c"), keys);
+        }
+    }
+
+    @Test
+    public void writeBatch(@TempDir Path tempDir) throws DatabaseException {
+        try (Database impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            impl.put("batch-ns-1", "gone", bytes("old"));
+
+            impl.write(new Batch()
+                    .put("batch-ns-1", "a", bytes("value-a"))
+                    .put("batch-ns-2", "b", bytes("value-b"))
+                    .delete("batch-ns-1", "gone")
+                    .put("batch-ns-1", "a", bytes("value-a2")));
+
+            assertArrayEquals(bytes("value-a2"), impl.get("batch-ns-1", "a"));
+            assertArrayEquals(bytes("value-b"), impl.get("batch-ns-2", "b"));
+            assertNull(impl.get("batch-ns-1", "gone"));
+        }
+    }
+
+    @Test
+    public void putDirectBuffer(@TempDir Path tempDir) throws DatabaseException {
+        try (Database impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(64);
+            direct.put(bytes("{\"direct\":true}")).flip();
+            impl.put("buffer-ns", "direct", direct);
+
+            // Keys longer than the cached key buffer still work
+            String longKey = String.join("", Collections.nCopies(100, "long-"));
+            impl.put("buffer-ns", longKey, ByteBuffer.wrap(bytes("heap")));
+
+            assertArrayEquals(bytes("{\"direct\":true}"), impl.get("buffer-ns", "direct"));
+            assertArrayEquals(bytes("heap"), impl.get("buffer-ns", longKey));
+        }
+    }
+
+    @Test
+    public void memoryBudget(@TempDir Path tempDir) throws DatabaseException {
+        RocksDbConfig config = new RocksDbConfig()
+                .setMemoryBudgetBytes(64 << 20)
+                .setWriteBufferRatio(0.25);
+
+        try (RocksDbDatabaseImpl impl = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("first").toString(), config);
+             RocksDbDatabaseImpl other = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("second").toString(), config)) {
+            for (int i = 0; i < 1000; i++) {
+                impl.put("memory-ns", "key-" + i, bytes("value-" + i));
+            }
+            other.put("other-ns", "key", bytes("value"));
+
+            MemoryUsage usage = impl.getMemoryUsage();
+            assertEquals(64 << 20, usage.getBudgetBytes());
+            assertEquals(16 << 20, usage.getWriteBufferBudgetBytes());
+            assertEquals(Collections.singleton("memory-ns"), usage.getNamespaces().keySet());
+            assertTrue(usage.getNamespaces().get("memory-ns").getMemTableBytes() > 0);
+
+            // Memtables are charged against the cache both databases share
+            assertTrue(usage.getBlockCacheUsageBytes() > 0);
+            assertEquals(usage.getBlockCacheUsageBytes(), other.getMemoryUsage().getBlockCacheUsageBytes());
+        }
+    }
+
+    @Test
+    public void memtablesStayWithinBudget(@TempDir Path tempDir) throws DatabaseException {
+        RocksDbConfig config = new RocksDbConfig()
+                .setMemoryBudgetBytes(8 << 20)
+                .setWriteBufferRatio(0.5);
+
+        byte [] value = new byte[1024];
+        Arrays.fill(value, (byte) 'x');
+        try (RocksDbDatabaseImpl first = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("first").toString(), config);
+             RocksDbDatabaseImpl second = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("second").toString(), config)) {
+            for (int i = 0; i < 16384; i++) {
+                RocksDbDatabaseImpl db = i % 2 == 0 ? first : second;
+                db.put("ns-" + (i % 6), "key-" + i, value);
+
+                if (i % 256 == 0) {
+                    MemoryUsage usage = MemoryUsage.combine(Arrays.asList(first.getMemoryUsage(), second.getMemoryUsage()));
+                    long memtables = usage.getNamespaces().values().stream().mapToLong(NamespaceMemory::getMemTableBytes).sum();
+                    assertTrue(memtables <= usage.getWriteBufferBudgetBytes(), memtables + " bytes of memtables");
+                    assertTrue(usage.getBlockCacheUsageBytes() <= usage.getBudgetBytes(),
+                            usage.getBlockCacheUsageBytes() + " bytes of cache");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void cacheUsageWithoutBudget(@TempDir Path tempDir) throws DatabaseException {
+        try (Database impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            impl.put("first-ns", "key", bytes("value"));
+            impl.put("second-ns", "key", bytes("value"));
+        }
+
+        // Reopening flushed both namespaces, reads go through each one's own cache and add up
+        try (RocksDbDatabaseImpl impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            impl.get("first-ns", "key");
+            long first = impl.getMemoryUsage().getBlockCacheUsageBytes();
+            assertTrue(first > 0);
+
+            impl.get("second-ns", "key");
+            assertEquals(2 * first, impl.getMemoryUsage().getBlockCacheUsageBytes());
+        }
+    }
+
+    @Test
+    public void splitKeys(@TempDir Path tempDir) throws DatabaseException {
+        // Each reopen flushes the WAL into a new L0 file, stay below the compaction trigger
+        for (int i = 0; i < 3; i++) {
+            try (Database impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+                assertTrue(impl.getSplitKeys("split-ns", 4).size() <= i);
+                for (int k = 0; k < 100; k++) {
+                    impl.put("split-ns", String.format("key-%d-%03d", i, k), bytes("value"));
+                }
+            }
+        }
+
+        try (Database impl = RocksDbDatabaseImpl.openDatabase(tempDir.toString())) {
+            assertEquals(Arrays.asList("key-1-000", "key-2-000"), impl.getSplitKeys("split-ns", 4));
+            assertEquals(Collections.singletonList("key-1-000"), impl.getSplitKeys("split-ns", 2));
+            assertEquals(Collections.emptyList(), impl.getSplitKeys("split-ns", 1));
+        }
+    }
+
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.rocksdb;
+
+import org.junit.jupiter.api.Test;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import threeguys.docsdb.UncheckedDatabaseException;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestRocksDbIterator {
+
+    @Test
+    public void endOfRange() throws RocksDBException {
+        RocksIterator it = mock(RocksIterator.class);
+        // Checked once by hasNext() and again by next()
+        when(it.isValid()).thenReturn(true, true, false);
+        when(it.key()).thenReturn(bytes("a"));
+        when(it.value()).thenReturn(bytes("value-a"));
+
+        RocksDbIterator iterator = new RocksDbIterator(it, null, null);
+        assertTrue(iterator.hasNext());
+        assertEquals("a", iterator.next().getKey());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        verify(it, atLeastOnce()).status();
+    }
+
+    @Test
+    public void readErrorIsNotTheEndOfTheRange() throws RocksDBException {
+        RocksIterator it = mock(RocksIterator.class);
+        when(it.isValid()).thenReturn(false);
+        doThrow(new RocksDBException("corruption")).when(it).status();
+
+        RocksDbIterator iterator = new RocksDbIterator(it, bytes("a"), bytes("z"));
+        UncheckedDatabaseException e = assertThrows(UncheckedDatabaseException.class, iterator::hasNext);
+        assertEquals("corruption", e.getCause().getCause().getMessage());
+        assertThrows(UncheckedDatabaseException.class, iterator::next);
+    }
+
+}
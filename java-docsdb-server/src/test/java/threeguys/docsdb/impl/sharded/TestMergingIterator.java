@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.sharded;
+
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.UncheckedDatabaseException;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestMergingIterator {
+
+    private static class ListIterator implements DatabaseIterator {
+
+        private final Iterator<String> keys;
+        private boolean closed;
+
+        ListIterator(String ... keys) {
+            this.keys = Arrays.asList(keys).iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return keys.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, byte []> next() {
+            String key = keys.next();
+            return new AbstractMap.SimpleEntry<>(key, bytes("value-" + key));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+    }
+
+    private static class FailingIterator extends ListIterator {
+
+        @Override
+        public boolean hasNext() {
+            throw new UncheckedDatabaseException(new DatabaseException("shard is gone", null));
+        }
+
+    }
+
+    @Test
+    public void mergesInKeyOrder() {
+        List<ListIterator> sources = Arrays.asList(new ListIterator("a", "d"), new ListIterator(),
+                new ListIterator("b", "c", "e"));
+
+        List<String> keys = new ArrayList<>();
+        try (MergingIterator it = new MergingIterator(new ArrayList<>(sources))) {
+            it.forEachRemaining(e -> keys.add(e.getKey()));
+        }
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), keys);
+        sources.forEach(s -> assertTrue(s.closed));
+    }
+
+    @Test
+    public void closesSourcesWhenPrimingFails() {
+        List<ListIterator> sources = Arrays.asList(new ListIterator("a"), new FailingIterator(), new ListIterator("b"));
+
+        assertThrows(UncheckedDatabaseException.class, () -> new MergingIterator(new ArrayList<>(sources)));
+        sources.forEach(s -> assertTrue(s.closed));
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.sharded;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.MemoryMonitor;
+import threeguys.docsdb.api.MemoryUsage;
+import threeguys.docsdb.api.Namespace;
+import threeguys.docsdb.api.NamespaceMemory;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestShardedDatabaseImpl {
+
+    private List<String> paths(Path tempDir, int count) {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            paths.add(tempDir.resolve("shard-" + i).toString());
+        }
+        return paths;
+    }
+
+    @Test
+    public void smokeTest(@TempDir Path tempDir) throws DatabaseException {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            expected.add(String.format("key-%03d", i));
+        }
+
+        try (Database db = ShardedDatabaseImpl.openDatabase(paths(tempDir, 4))) {
+            for (String key : expected) {
+                db.put("sharded", key, bytes("value-" + key));
+            }
+
+            for (String key : expected) {
+                assertArrayEquals(bytes("value-" + key), db.get("sharded", key));
+            }
+
+            Map<String, byte []> found = db.multiGet("sharded", Arrays.asList("key-042", "nope", "key-007", "key-099"));
+            assertEquals(Arrays.asList("key-042", "key-007", "key-099"), new ArrayList<>(found.keySet()));
+            assertArrayEquals(bytes("value-key-007"), found.get("key-007"));
+
+            List<String> scanned = new ArrayList<>();
+            try (DatabaseIterator it = db.scan("sharded", null, null)) {
+                it.forEachRemaining(e -> scanned.add(e.getKey()));
+            }
+            assertEquals(expected, scanned);
+
+            scanned.clear();
+            try (DatabaseIterator it = db.scan("sharded", "key-010", "key-020")) {
+                it.forEachRemaining(e -> scanned.add(e.getKey()));
+            }
+            assertEquals(expected.subList(10, 20), scanned);
+
+            db.delete("sharded", "key-042");
+            assertNull(db.get("sharded", "key-042"));
+
+            Batch batch = new Batch();
+            for (int i = 0; i < 10; i++) {
+                batch.put("batched", "key-" + i, bytes("batched-" + i));
+            }
+            db.write(batch.delete("batched", "key-3"));
+            assertArrayEquals(bytes("batched-9"), db.get("batched", "key-9"));
+            assertNull(db.get("batched", "key-3"));
+
+            Namespace ns = db.getMetaData("sharded");
+            assertEquals("ns:sharded", ns.getName());
+            assertTrue(db.getNamespaces().contains("ns:sharded"));
+        }
+
+        try (Database db = ShardedDatabaseImpl.openDatabase(paths(tempDir, 4))) {
+            assertArrayEquals(bytes("value-key-001"), db.get("sharded", "key-001"));
+            assertNull(db.get("sharded", "key-042"));
+        }
+    }
+
+    @Test
+    public void refusesChangedPaths(@TempDir Path tempDir) throws DatabaseException {
+        List<String> paths = paths(tempDir, 3);
+        try (Database db = ShardedDatabaseImpl.openDatabase(paths)) {
+            db.put("sharded", "key-1", bytes("value-1"));
+        }
+
+        List<String> reordered = new ArrayList<>(paths);
+        Collections.swap(reordered, 0, 2);
+        assertThrows(DatabaseException.class, () -> ShardedDatabaseImpl.openDatabase(reordered));
+        assertThrows(DatabaseException.class, () -> ShardedDatabaseImpl.openDatabase(paths.subList(0, 2)));
+        assertThrows(DatabaseException.class, () -> ShardedDatabaseImpl.openDatabase(paths(tempDir, 4)));
+
+        try (Database db = ShardedDatabaseImpl.openDatabase(paths)) {
+            assertArrayEquals(bytes("value-1"), db.get("sharded", "key-1"));
+        }
+    }
+
+    @Test
+    public void refusesShardWithoutManifest(@TempDir Path tempDir) throws Exception {
+        List<String> paths = paths(tempDir, 3);
+        try (Database db = RocksDbDatabaseImpl.openDatabase(paths.get(1))) {
+            db.put("sharded", "key-1", bytes("value-1"));
+        }
+
+        assertThrows(DatabaseException.class, () -> ShardedDatabaseImpl.openDatabase(paths));
+        for (String path : paths) {
+            assertFalse(Files.exists(Paths.get(path, ShardedDatabaseImpl.MANIFEST)));
+        }
+    }
+
+    @Test
+    public void keysAreSpreadAcrossShards() throws DatabaseException {
+        List<Database> shards = Arrays.asList(mock(Database.class), mock(Database.class), mock(Database.class));
+        ShardedDatabaseImpl db = new ShardedDatabaseImpl(shards, null);
+
+        int [] counts = new int[shards.size()];
+        for (int i = 0; i < 3000; i++) {
+            counts[db.shardIndex("key-" + i)]++;
+        }
+        for (int count : counts) {
+            assertTrue(count > 800, "shards are unbalanced: " + Arrays.toString(counts));
+        }
+
+        db.put("ns", "some-key", bytes("data"));
+        verify(shards.get(db.shardIndex("some-key")), times(1)).put(eq("ns"), eq("some-key"), eq(bytes("data")));
+    }
+
+    @Test
+    public void shardFailure() throws DatabaseException {
+        Database good = mock(Database.class);
+        Database bad = mock(Database.class);
+        when(good.getMetaData(anyString())).thenReturn(new Namespace("ns:test", 1L));
+        when(bad.getMetaData(anyString())).thenThrow(new DatabaseException("test-error", null));
+
+        ShardedDatabaseImpl db = new ShardedDatabaseImpl(Arrays.asList(good, bad), Executors.newFixedThreadPool(2));
+        try {
+            DatabaseException e = assertThrows(DatabaseException.class, () -> db.getMetaData("test"));
+            assertEquals("test-error", e.getMessage());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void memoryUsage() throws DatabaseException {
+        Database first = mock(Database.class, withSettings().extraInterfaces(MemoryMonitor.class));
+        Database second = mock(Database.class, withSettings().extraInterfaces(MemoryMonitor.class));
+        when(((MemoryMonitor) first).getMemoryUsage()).thenReturn(new MemoryUsage(1000, 500, 300, 10,
+                Collections.singletonMap("ns", new NamespaceMemory(100, 1))));
+        when(((MemoryMonitor) second).getMemoryUsage()).thenReturn(new MemoryUsage(1000, 500, 320, 10,
+                Collections.singletonMap("ns", new NamespaceMemory(200, 2))));
+
+        ShardedDatabaseImpl db = new ShardedDatabaseImpl(Arrays.asList(first, second), Executors.newFixedThreadPool(2));
+        try {
+            // Shards share one cache, namespaces add up
+            assertEquals(new MemoryUsage(1000, 500, 320, 10, Collections.singletonMap("ns", new NamespaceMemory(300, 3))),
+                    db.getMemoryUsage());
+        } finally {
+            db.close();
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.impl.tiered;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import threeguys.docsdb.Batch;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.api.TierUsage;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestTieredDatabaseImpl {
+
+    private static RocksDbConfig config(Path tempDir, long fastTierBytes) {
+        return new RocksDbConfig()
+                .setColdPath(tempDir.resolve("cold").toString())
+                .setFastTierBytes(fastTierBytes);
+    }
+
+    private static TierUsage tier(List<TierUsage> tiers, String name) {
+        return tiers.stream().filter(t -> name.equals(t.getName())).findFirst().orElseThrow(AssertionError::new);
+    }
+
+    @Test
+    public void placement(@TempDir Path tempDir) throws DatabaseException {
+        String path = tempDir.resolve("docs.db").toString();
+
+        try (TieredDatabaseImpl db = TieredDatabaseImpl.openDatabase(path, config(tempDir, 1L << 30))) {
+            assertEquals(TieredDatabaseImpl.TIERED, db.getPlacement("anything"));
+            assertEquals(TieredDatabaseImpl.FAST, db.setPlacement("hot-ns", TieredDatabaseImpl.FAST));
+            assertEquals(TieredDatabaseImpl.COLD, db.setPlacement("archive-ns", TieredDatabaseImpl.COLD));
+            assertEquals(TieredDatabaseImpl.COLD, db.setPlacement("archive-ns", TieredDatabaseImpl.COLD));
+
+            db.put("tiered-ns", "key", bytes("tiered-value"));
+            db.write(new Batch()
+                    .put("hot-ns", "key", bytes("hot-value"))
+                    .put("archive-ns", "key", bytes("cold-value")));
+
+            assertThrows(PlacementConflictException.class, () -> db.setPlacement("tiered-ns", TieredDatabaseImpl.COLD));
+            assertThrows(PlacementConflictException.class, () -> db.setPlacement("hot-ns", TieredDatabaseImpl.TIERED));
+            assertThrows(IllegalArgumentException.class, () -> db.setPlacement("new-ns", "tape"));
+            assertTrue(db.getNamespaces().containsAll(Arrays.asList("ns:tiered-ns", "ns:hot-ns", "ns:archive-ns")));
+        }
+
+        // Placement comes back from the namespace metadata, and reopening flushes the WAL into SST files
+        try (TieredDatabaseImpl db = TieredDatabaseImpl.openDatabase(path, config(tempDir, 1L << 30))) {
+            assertEquals(TieredDatabaseImpl.TIERED, db.getPlacement("tiered-ns"));
+            assertEquals(TieredDatabaseImpl.FAST, db.getPlacement("hot-ns"));
+            assertEquals(TieredDatabaseImpl.COLD, db.getPlacement("archive-ns"));
+
+            assertArrayEquals(bytes("tiered-value"), db.get("tiered-ns", "key"));
+            assertArrayEquals(bytes("hot-value"), db.get("hot-ns", "key"));
+            assertArrayEquals(bytes("cold-value"), db.get("archive-ns", "key"));
+
+            List<TierUsage> tiers = db.getTierUsage();
+            TierUsage fast = tier(tiers, TieredDatabaseImpl.FAST);
+            TierUsage cold = tier(tiers, TieredDatabaseImpl.COLD);
+            assertEquals(1L << 30, fast.getTargetBytes());
+            assertTrue(fast.getNamespaces().containsKey("tiered-ns"));
+            assertTrue(fast.getNamespaces().containsKey("hot-ns"));
+            assertFalse(fast.getNamespaces().containsKey("archive-ns"));
+            assertEquals(cold.getNamespaces().keySet(), Collections.singleton("archive-ns"));
+            assertTrue(cold.getSstBytes() > 0);
+        }
+    }
+
+    @Test
+    public void readsDontPlaceNamespaces(@TempDir Path tempDir) throws DatabaseException {
+        String path = tempDir.resolve("docs.db").toString();
+
+        try (TieredDatabaseImpl db = TieredDatabaseImpl.openDatabase(path, config(tempDir, 1L << 30))) {
+            assertNull(db.get("unplaced-ns", "key"));
+            assertTrue(db.multiGet("unplaced-ns", Collections.singletonList("key")).isEmpty());
+            assertTrue(db.getSplitKeys("unplaced-ns", 4).isEmpty());
+            assertEquals(0, db.getMetaData("unplaced-ns").getSize());
+            try (DatabaseIterator it = db.scan("unplaced-ns", null, null)) {
+                assertFalse(it.hasNext());
+            }
+            assertFalse(db.getNamespaces().contains("ns:unplaced-ns"));
+
+            assertEquals(TieredDatabaseImpl.COLD, db.setPlacement("unplaced-ns", TieredDatabaseImpl.COLD));
+            db.put("unplaced-ns", "key", bytes("value"));
+            assertArrayEquals(bytes("value"), db.get("unplaced-ns", "key"));
+        }
+
+        try (TieredDatabaseImpl db = TieredDatabaseImpl.openDatabase(path, config(tempDir, 1L << 30))) {
+            assertEquals(TieredDatabaseImpl.COLD, db.getPlacement("unplaced-ns"));
+        }
+    }
+
+    @Test
+    public void bottomOfTreeMovesToColdTier(@TempDir Path tempDir) throws DatabaseException, InterruptedException {
+        String path = tempDir.resolve("docs.db").toString();
+
+        // Every reopen flushes one L0 file to the fast path, enough of them trigger a universal compaction
+        // whose output is too big for the fast tier
+        for (int i = 0; i < 4; i++) {
+            try (TieredDatabaseImpl db = TieredDatabaseImpl.openDatabase(path, config(tempDir, 1))) {
+                for (int k = 0; k < 100; k++) {
+                    db.put("tiered-ns", "key-" + i + "-" + k, bytes("value-" + k));
+                }
+            }
+        }
+
+        try (TieredDatabaseImpl db = TieredDatabaseImpl.openDatabase(path, config(tempDir, 1))) {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (tier(db.getTierUsage(), TieredDatabaseImpl.COLD).getSstFiles() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            TierUsage cold = tier(db.getTierUsage(), TieredDatabaseImpl.COLD);
+            assertTrue(cold.getNamespaces().getOrDefault("tiered-ns", 0L) > 0, "nothing was compacted to the cold tier");
+            assertArrayEquals(bytes("value-42"), db.get("tiered-ns", "key-0-42"));
+            assertArrayEquals(bytes("value-42"), db.get("tiered-ns", "key-3-42"));
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.ingest;
+
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.admission.ThrottledException;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBufferPool {
+
+    @Test
+    public void sizeClasses() throws ThrottledException {
+        BufferPool pool = new BufferPool(1000, 5000, 1 << 20, 1 << 24);
+        assertEquals(8192, pool.getMaxSize());
+
+        assertEquals(1024, pool.acquire(1).capacity());
+        assertEquals(1024, pool.acquire(1024).capacity());
+        assertEquals(2048, pool.acquire(1025).capacity());
+        assertEquals(8192, pool.acquire(5000).capacity());
+        assertTrue(pool.acquire(10).isDirect());
+        assertThrows(IllegalArgumentException.class, () -> pool.acquire(8193));
+    }
+
+    @Test
+    public void recycles() throws ThrottledException {
+        BufferPool pool = new BufferPool(16, 64, 64, 1 << 24);
+
+        ByteBuffer first = pool.acquire(16);
+        first.put((byte) 1);
+        pool.release(first);
+
+        ByteBuffer second = pool.acquire(10);
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(16, second.limit());
+
+        // Heap buffers and buffers that don't match a class are not pooled
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(ByteBuffer.allocateDirect(20));
+        assertNotSame(second, pool.acquire(16));
+        assertTrue(pool.acquire(16).isDirect());
+        assertEquals(16, pool.acquire(16).capacity());
+    }
+
+    @Test
+    public void limitsOutstandingBytes() throws ThrottledException {
+        BufferPool pool = new BufferPool(16, 64, 1024, 128);
+
+        ByteBuffer first = pool.acquire(64);
+        ByteBuffer second = pool.acquire(33);
+        assertEquals(128, pool.getOutstandingBytes());
+        assertThrows(ThrottledException.class, () -> pool.acquire(1));
+        assertEquals(128, pool.getOutstandingBytes());
+
+        // Released buffers count against the limit again once they are handed out
+        pool.release(first);
+        assertEquals(64, pool.getOutstandingBytes());
+        assertSame(first, pool.acquire(64));
+        pool.release(second);
+        pool.release(ByteBuffer.allocate(64));
+        assertEquals(64, pool.getOutstandingBytes());
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.ingest;
+
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.DatabaseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestDocumentReader {
+
+    private static String read(DocumentReader reader, String body, long contentLength) throws DatabaseException, IOException {
+        ByteBuffer buffer = reader.read(new ByteArrayInputStream(bytes(body)), contentLength);
+        try {
+            assertTrue(buffer.isDirect());
+            byte [] value = new byte[buffer.remaining()];
+            buffer.get(value);
+            return new String(value, StandardCharsets.UTF_8);
+        } finally {
+            reader.release(buffer);
+        }
+    }
+
+    private static String largeDocument(int entries) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < entries; i++) {
+            json.append(i > 0 ? "," : "").append("\"field-").append(i).append("\":[").append(i).append(",\"value\"]");
+        }
+        return json.append("}").toString();
+    }
+
+    @Test
+    public void readsDocuments() throws DatabaseException, IOException {
+        DocumentReader reader = new DocumentReader(new BufferPool(4096, 1 << 20, 1 << 22, 1 << 24), 1 << 20, true);
+        assertEquals("{}", read(reader, "{}", 2));
+        assertEquals(" \"text\" ", read(reader, " \"text\" ", -1));
+        assertEquals("42", read(reader, "42", -1));
+
+        // Spans several chunks and has to grow through the size classes when the length isn't known
+        String large = largeDocument(20000);
+        assertTrue(large.length() > 8 * 4096);
+        assertEquals(large, read(reader, large, -1));
+        assertEquals(large, read(reader, large, large.length()));
+    }
+
+    @Test
+    public void rejectsLargeDocuments() throws DatabaseException, IOException {
+        DocumentReader reader = new DocumentReader(new BufferPool(16, 1024, 4096, 1 << 24), 1000, true);
+        String fits = "\"" + String.join("", Collections.nCopies(998, "x")) + "\"";
+        assertEquals(fits, read(reader, fits, -1));
+
+        String large = largeDocument(100);
+        assertThrows(DocumentTooLargeException.class, () -> read(reader, large, large.length()));
+        assertThrows(DocumentTooLargeException.class, () -> read(reader, large, -1));
+        assertThrows(IllegalArgumentException.class, () -> new DocumentReader(new BufferPool(16, 1024, 4096, 1 << 24), 2048, true));
+        assertThrows(IllegalArgumentException.class, () -> new DocumentReader(new BufferPool(16, 1024, 4096, 1024), 1024, true));
+    }
+
+    @Test
+    public void stopsReadingEarly() {
+        DocumentReader reader = new DocumentReader(new BufferPool(4096, 1 << 16, 1 << 20, 1 << 24), 1 << 16, true);
+
+        // A stream that never ends, the limit has to kick in before it's drained
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return ' ';
+            }
+        };
+        assertThrows(DocumentTooLargeException.class, () -> reader.read(endless, -1));
+
+        // Malformed input is rejected at the first bad chunk
+        InputStream garbage = new InputStream() {
+            @Override
+            public int read() {
+                return '}';
+            }
+        };
+        assertThrows(InvalidDocumentException.class, () -> reader.read(garbage, -1));
+    }
+
+    @Test
+    public void validation() throws DatabaseException, IOException {
+        DocumentReader reader = new DocumentReader(new BufferPool(64, 1024, 4096, 1 << 24), 1024, true);
+        assertThrows(InvalidDocumentException.class, () -> read(reader, "", -1));
+        assertThrows(InvalidDocumentException.class, () -> read(reader, "{\"a\":", -1));
+        assertThrows(InvalidDocumentException.class, () -> read(reader, "not json", -1));
+        assertThrows(InvalidDocumentException.class, () -> read(reader, "{} []", -1));
+
+        DocumentReader unchecked = new DocumentReader(new BufferPool(64, 1024, 4096, 1 << 24), 1024, false);
+        assertEquals("not json", read(unchecked, "not json", -1));
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.query;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.api.Condition;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestFilter {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static JsonNode json(String json) throws IOException {
+        return JSON.readTree(json);
+    }
+
+    private static boolean matches(String document, String field, String op, String value) throws IOException, InvalidQueryException {
+        Condition condition = new Condition(field, op, value == null ? null : json(value));
+        return Filter.compile(Collections.singletonList(condition)).matches(json(document));
+    }
+
+    @Test
+    public void equality() throws IOException, InvalidQueryException {
+        assertTrue(matches("{\"name\":\"bob\"}", "name", "eq", "\"bob\""));
+        assertFalse(matches("{\"name\":\"bob\"}", "name", "eq", "\"alice\""));
+        assertTrue(matches("{\"n\":1}", "n", "eq", "1.0"));
+        assertTrue(matches("{\"a\":{\"b\":[1,2]}}", "a.b", "eq", "[1,2]"));
+        assertTrue(matches("{\"a\":{\"b\":[1,2]}}", "a.b.1", "eq", "2"));
+        assertTrue(matches("{\"a/b\":true}", "/a~1b", "eq", "true"));
+        assertFalse(matches("{}", "name", "eq", "null"));
+        assertTrue(matches("{\"name\":null}", "name", "eq", "null"));
+    }
+
+    @Test
+    public void ranges() throws IOException, InvalidQueryException {
+        assertTrue(matches("{\"age\":30}", "age", "gt", "18"));
+        assertTrue(matches("{\"age\":18}", "age", "gte", "18"));
+        assertFalse(matches("{\"age\":18}", "age", "gt", "18"));
+        assertTrue(matches("{\"age\":17.5}", "age", "lt", "18"));
+        assertTrue(matches("{\"age\":18}", "age", "lte", "18"));
+        assertTrue(matches("{\"city\":\"berlin\"}", "city", "lt", "\"paris\""));
+
+        // Different types and missing fields never match a range
+        assertFalse(matches("{\"age\":\"30\"}", "age", "gt", "18"));
+        assertFalse(matches("{}", "age", "lt", "18"));
+    }
+
+    @Test
+    public void exists() throws IOException, InvalidQueryException {
+        assertTrue(matches("{\"email\":\"x\"}", "email", "exists", null));
+        assertTrue(matches("{\"email\":null}", "email", "exists", "true"));
+        assertFalse(matches("{}", "email", "exists", null));
+        assertTrue(matches("{}", "email", "exists", "false"));
+    }
+
+    @Test
+    public void conjunction() throws IOException, InvalidQueryException {
+        Filter filter = Filter.compile(Arrays.asList(
+                new Condition("age", "gte", json("18")),
+                new Condition("age", "lt", json("65")),
+                new Condition("active", "eq", json("true"))));
+        assertTrue(filter.matches(json("{\"age\":40,\"active\":true}")));
+        assertFalse(filter.matches(json("{\"age\":70,\"active\":true}")));
+        assertFalse(filter.matches(json("{\"age\":40,\"active\":false}")));
+        assertTrue(Filter.compile(Collections.emptyList()).matches(json("[]")));
+    }
+
+    @Test
+    public void invalid() throws IOException {
+        assertThrows(InvalidQueryException.class, () -> matches("{}", "a", "like", "1"));
+        assertThrows(InvalidQueryException.class, () -> matches("{}", "a", "eq", null));
+        assertThrows(InvalidQueryException.class, () -> matches("{}", "a", "gt", "[1]"));
+        assertThrows(InvalidQueryException.class, () -> matches("{}", "a", "exists", "1"));
+        assertThrows(InvalidQueryException.class, () -> matches("{}", "", "exists", null));
+        assertThrows(InvalidQueryException.class, () -> matches("{}", null, "exists", null));
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.query;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.DatabaseIterator;
+import threeguys.docsdb.api.AggregateResult;
+import threeguys.docsdb.api.Condition;
+import threeguys.docsdb.api.FieldStats;
+import threeguys.docsdb.api.Query;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestQueryEngine {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private TreeMap<String, byte []> data;
+    private Database db;
+    private QueryEngine engine;
+
+    private static DatabaseIterator iterator(Iterator<Map.Entry<String, byte []>> it) {
+        return new DatabaseIterator() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, byte []> next() {
+                return it.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @BeforeEach
+    public void setup() throws DatabaseException {
+        data = new TreeMap<>();
+        for (int i = 0; i < 100; i++) {
+            data.put(String.format("key-%03d", i), bytes("{\"n\":" + i + ",\"even\":" + (i % 2 == 0) + "}"));
+        }
+        data.put("key-100", bytes("not json"));
+
+        db = mock(Database.class);
+        when(db.getSplitKeys(eq("ns"), anyInt())).thenReturn(Arrays.asList("key-025", "key-050", "key-075"));
+        when(db.scan(eq("ns"), any(), any())).thenAnswer(invocation -> {
+            String start = invocation.getArgument(1);
+            String end = invocation.getArgument(2);
+            NavigableMap<String, byte []> range = data;
+            if (start != null) {
+                range = range.tailMap(start, true);
+            }
+            if (end != null) {
+                range = range.headMap(end, false);
+            }
+            return iterator(new ArrayList<>(range.entrySet()).iterator());
+        });
+
+        engine = new QueryEngine(db, 4);
+    }
+
+    @AfterEach
+    public void teardown() {
+        engine.close();
+    }
+
+    private static Query query(String start, String end, long limit, Condition... where) {
+        return new Query(start, end, Arrays.asList(where), Collections.singletonList("n"), limit);
+    }
+
+    private List<String> stream(Query query) throws DatabaseException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        engine.stream("ns", query, out);
+        List<String> keys = new ArrayList<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                keys.add(JSON.readTree(line).get("key").asText());
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void ranges() throws DatabaseException {
+        assertEquals(4, engine.ranges("ns", query(null, null, 0)).size());
+        List<String []> ranges = engine.ranges("ns", query("key-030", "key-060", 0));
+        assertEquals(Arrays.asList("key-030", "key-050"), Arrays.asList(ranges.get(0)));
+        assertEquals(Arrays.asList("key-050", "key-060"), Arrays.asList(ranges.get(1)));
+        assertEquals(2, ranges.size());
+
+        // Splits on the bounds don't produce empty ranges
+        assertEquals(1, engine.ranges("ns", query("key-050", "key-075", 0)).size());
+    }
+
+    @Test
+    public void streamsInKeyOrder() throws DatabaseException, IOException {
+        List<String> expected = data.keySet().stream()
+                .filter(k -> !k.equals("key-100") && Integer.parseInt(k.substring(4)) % 2 == 0)
+                .collect(Collectors.toList());
+        assertEquals(expected, stream(query(null, null, 0, new Condition("even", "eq", JSON.getNodeFactory().booleanNode(true)))));
+
+        assertEquals(Arrays.asList("key-040", "key-041", "key-042"),
+                stream(query("key-040", null, 3)));
+
+        assertEquals(Arrays.asList("key-090", "key-091"),
+                stream(query(null, null, 0, new Condition("n", "gte", JSON.getNodeFactory().numberNode(90)),
+                        new Condition("n", "lt", JSON.getNodeFactory().numberNode(92)))));
+    }
+
+    @Test
+    public void aggregates() throws DatabaseException {
+        AggregateResult result = engine.aggregate("ns", query(null, null, 0,
+                new Condition("n", "gte", JSON.getNodeFactory().numberNode(10)),
+                new Condition("even", "eq", JSON.getNodeFactory().booleanNode(false))));
+
+        assertEquals(101, result.getScanned());
+        assertEquals(45, result.getMatched());
+        assertEquals(new FieldStats(45, 2475, 11.0, 99.0), result.getFields().get("n"));
+        assertTrue(result.getScannedBytes() > 0);
+
+        AggregateResult none = engine.aggregate("ns", query(null, null, 0, new Condition("missing", "exists", null)));
+        assertEquals(0, none.getMatched());
+        assertEquals(new FieldStats(0, 0, null, null), none.getFields().get("n"));
+    }
+
+    @Test
+    public void failures() throws DatabaseException {
+        assertThrows(InvalidQueryException.class, () -> engine.aggregate("ns", query(null, null, 0, new Condition("n", "near", null))));
+        assertThrows(InvalidQueryException.class, () -> engine.validate(query(null, null, -1)));
+
+        when(db.scan(eq("broken"), any(), any())).thenThrow(new DatabaseException("test-error", null));
+        DatabaseException e = assertThrows(DatabaseException.class, () -> engine.aggregate("broken", query(null, null, 0)));
+        assertEquals("test-error", e.getMessage());
+        e = assertThrows(DatabaseException.class, () -> engine.stream("broken", query(null, null, 0), new ByteArrayOutputStream()));
+        assertEquals("test-error", e.getMessage());
+    }
+
+}
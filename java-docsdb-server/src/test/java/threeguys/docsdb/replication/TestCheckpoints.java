@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestCheckpoints {
+
+    private static byte [] checkpoint(Path dir) throws IOException {
+        Files.createDirectories(dir.resolve("sub"));
+        Files.write(dir.resolve("CURRENT"), bytes("MANIFEST-000001\n"));
+        Files.write(dir.resolve("sub").resolve("000001.sst"), new byte[100_000]);
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        Checkpoints.zip(dir, zip);
+        return zip.toByteArray();
+    }
+
+    @Test
+    public void install(@TempDir Path tempDir) throws IOException {
+        byte [] zip = checkpoint(tempDir.resolve("source"));
+
+        Path target = tempDir.resolve("replica");
+        Checkpoints.install(new ByteArrayInputStream(zip), target);
+        assertArrayEquals(bytes("MANIFEST-000001\n"), Files.readAllBytes(target.resolve("CURRENT")));
+        assertEquals(100_000, Files.size(target.resolve("sub").resolve("000001.sst")));
+        assertFalse(Files.exists(tempDir.resolve("replica.download")));
+
+        // An existing empty directory is replaced, one with data in it is left alone
+        Path empty = Files.createDirectory(tempDir.resolve("empty"));
+        Checkpoints.install(new ByteArrayInputStream(zip), empty);
+        assertTrue(Files.isRegularFile(empty.resolve("CURRENT")));
+        assertThrows(IOException.class, () -> Checkpoints.install(new ByteArrayInputStream(zip), target));
+    }
+
+    @Test
+    public void interruptedDownload(@TempDir Path tempDir) throws IOException {
+        byte [] zip = checkpoint(tempDir.resolve("source"));
+
+        // Cut off after CURRENT has been unzipped, halfway through the SST file
+        InputStream truncated = new ByteArrayInputStream(Arrays.copyOf(zip, zip.length / 2)) {
+            @Override
+            public synchronized int read(byte [] b, int off, int len) {
+                int read = super.read(b, off, len);
+                if (read < 0) {
+                    throw new IllegalStateException("connection reset");
+                }
+                return read;
+            }
+        };
+
+        Path target = tempDir.resolve("replica");
+        assertThrows(RuntimeException.class, () -> Checkpoints.install(truncated, target));
+        assertFalse(Files.exists(target));
+        assertFalse(Files.exists(tempDir.resolve("replica.download")));
+    }
+
+}
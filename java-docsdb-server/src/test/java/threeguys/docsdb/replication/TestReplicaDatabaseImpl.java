@@ -0,0 +1,144 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.replication;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.api.ReplicationStatus;
+import threeguys.docsdb.impl.rocksdb.RocksDbConfig;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestReplicaDatabaseImpl {
+
+    // Sends the updates through the wire format, like the HTTP client would
+    private ReplicationFetcher fetcher(ReplicationSource source) {
+        return (since, maxBatches) -> {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                source.getUpdatesSince(since, maxBatches).writeTo(out);
+                return ReplicationUpdates.readFrom(new ByteArrayInputStream(out.toByteArray()));
+            } catch (DatabaseException e) {
+                throw new IOException(e);
+            }
+        };
+    }
+
+    @Test
+    public void followsPrimary(@TempDir Path tempDir) throws DatabaseException {
+        String replicaPath = tempDir.resolve("replica").toString();
+        RocksDbConfig config = new RocksDbConfig().setWalTtlSeconds(3600);
+
+        try (RocksDbDatabaseImpl primary = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("primary").toString(), config)) {
+            primary.put("existing", "key-1", bytes("value-1"));
+            primary.createCheckpoint(replicaPath);
+
+            try (ReplicaDatabaseImpl replica = openReplica(replicaPath, primary)) {
+                assertThrows(StaleReplicaException.class, () -> replica.get("existing", "key-1"));
+
+                replica.poll();
+                assertArrayEquals(bytes("value-1"), replica.get("existing", "key-1"));
+
+                primary.put("existing", "key-2", bytes("value-2"));
+                primary.put("created-later", "key-3", bytes("value-3"));
+                primary.delete("existing", "key-1");
+                for (int i = 0; i < 10; i++) {
+                    primary.put("created-later", "many-" + i, bytes("value-" + i));
+                }
+                replica.poll();
+
+                assertNull(replica.get("existing", "key-1"));
+                assertArrayEquals(bytes("value-2"), replica.get("existing", "key-2"));
+                assertArrayEquals(bytes("value-3"), replica.get("created-later", "key-3"));
+                assertArrayEquals(bytes("value-9"), replica.get("created-later", "many-9"));
+
+                ReplicationStatus status = replica.getStatus();
+                assertEquals(ReplicationStatus.REPLICA, status.getRole());
+                assertEquals(primary.getLatestSequenceNumber(), status.getAppliedSequence());
+                assertEquals(primary.getLatestSequenceNumber(), status.getPrimarySequence());
+                assertNull(status.getError());
+
+                assertThrows(ReadOnlyException.class, () -> replica.put("existing", "key-4", bytes("nope")));
+                assertThrows(ReadOnlyException.class, () -> replica.delete("existing", "key-2"));
+            }
+
+            primary.put("existing", "key-5", bytes("value-5"));
+
+            // Picks up where it left off after a restart
+            try (ReplicaDatabaseImpl replica = openReplica(replicaPath, primary)) {
+                replica.poll();
+                assertArrayEquals(bytes("value-5"), replica.get("existing", "key-5"));
+                assertArrayEquals(bytes("value-3"), replica.get("created-later", "key-3"));
+                assertEquals(primary.getLatestSequenceNumber(), replica.getStatus().getAppliedSequence());
+            }
+        }
+    }
+
+    private ReplicaDatabaseImpl openReplica(String path, ReplicationSource primary) throws DatabaseException {
+        RocksDbDatabaseImpl local = RocksDbDatabaseImpl.openDatabase(path);
+        return new ReplicaDatabaseImpl(local, local, fetcher(primary), 4, 60000);
+    }
+
+    @Test
+    public void updatesNoLongerInWal(@TempDir Path tempDir) throws DatabaseException {
+        String primaryPath = tempDir.resolve("primary").toString();
+        String replicaPath = tempDir.resolve("replica").toString();
+
+        try (RocksDbDatabaseImpl primary = RocksDbDatabaseImpl.openDatabase(primaryPath)) {
+            primary.put("ns", "key-1", bytes("value-1"));
+            primary.createCheckpoint(replicaPath);
+            primary.put("ns", "key-2", bytes("value-2"));
+        }
+
+        // Reopening flushes the WAL, without a TTL it is deleted rather than archived
+        try (RocksDbDatabaseImpl primary = RocksDbDatabaseImpl.openDatabase(primaryPath)) {
+            primary.put("ns", "key-3", bytes("value-3"));
+            assertThrows(UpdatesUnavailableException.class, () -> primary.getUpdatesSince(1, 10));
+
+            try (ReplicaDatabaseImpl replica = openReplica(replicaPath, primary)) {
+                replica.poll();
+                assertTrue(replica.getStatus().getError().contains("bootstrapped again"), replica.getStatus().getError());
+                assertEquals(primary.getLatestSequenceNumber() - 2, replica.getStatus().getAppliedSequence());
+            }
+        }
+    }
+
+    @Test
+    public void missingUpdates(@TempDir Path tempDir) throws DatabaseException {
+        try (RocksDbDatabaseImpl primary = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("primary").toString())) {
+            primary.put("ns", "key-1", bytes("value-1"));
+            primary.createCheckpoint(tempDir.resolve("replica").toString());
+
+            try (RocksDbDatabaseImpl replica = RocksDbDatabaseImpl.openDatabase(tempDir.resolve("replica").toString())) {
+                long next = replica.getNextSequence();
+                ReplicationUpdates gap = new ReplicationUpdates(next + 10, Collections.singletonMap(0, "default"),
+                        Collections.singletonList(new ReplicationUpdates.Batch(next + 5, 1, new byte[0])));
+                assertThrows(DatabaseException.class, () -> replica.apply(gap));
+                assertEquals(next, replica.getNextSequence());
+            }
+        }
+    }
+
+}
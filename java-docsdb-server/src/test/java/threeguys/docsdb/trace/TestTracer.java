@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.trace;
+
+import org.junit.jupiter.api.Test;
+import threeguys.docsdb.api.SlowRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTracer {
+
+    @Test
+    public void disabled() {
+        assertFalse(Tracer.disabled().isEnabled());
+        assertTrue(new Tracer(0, 1).isEnabled());
+    }
+
+    @Test
+    public void bindAndRestore() {
+        Tracer tracer = new Tracer(0, 10);
+        assertNull(tracer.current());
+
+        Trace outer = new Trace("GET", "/outer");
+        assertNull(tracer.bind(outer));
+        Trace inner = new Trace(null, null);
+        assertSame(outer, tracer.bind(inner));
+        assertSame(inner, tracer.current());
+
+        tracer.restore(outer);
+        assertSame(outer, tracer.current());
+        tracer.restore(null);
+        assertNull(tracer.current());
+    }
+
+    @Test
+    public void onlySlowRequestsAreLogged() {
+        Tracer tracer = new Tracer(60_000, 10);
+        tracer.finish(new Trace("GET", "/fast"), 200);
+        assertEquals(Collections.emptyList(), tracer.getSlowLog().getEntries(10));
+    }
+
+    @Test
+    public void timingsAndCounters() {
+        Tracer tracer = new Tracer(0, 10);
+        Trace trace = new Trace("PUT", "/namespace/ns/key");
+        trace.time("admission", 1_000);
+        trace.time("storage", 60_000_000_000L);
+        trace.time("storage.rocksdb.put", 2_000_000);
+        trace.time("storage.rocksdb.put", 1_000_000);
+        trace.count("bytes_written", 100);
+        trace.count("stall_micros", 0);
+
+        Trace run = new Trace(null, null);
+        run.count("bytes_written", 50);
+        trace.add(run);
+        tracer.finish(trace, 201);
+
+        SlowRequest request = tracer.getSlowLog().getEntries(10).get(0);
+        assertEquals(1, request.getId());
+        assertEquals("PUT", request.getMethod());
+        assertEquals("/namespace/ns/key", request.getPath());
+        assertEquals(201, request.getStatus());
+        assertEquals(Arrays.asList("admission", "storage", "storage.rocksdb.put", "http"),
+                Arrays.asList(request.getTimingsMicros().keySet().toArray()));
+        assertEquals(1, request.getTimingsMicros().get("admission"));
+        assertEquals(3_000, request.getTimingsMicros().get("storage.rocksdb.put"));
+        assertEquals(Collections.singletonMap("bytes_written", 150L), request.getCounters());
+
+        // Storage wasn't really a minute, sub-phases are counted within it and http can't go negative
+        assertEquals(0, request.getTimingsMicros().get(Trace.HTTP));
+    }
+
+    @Test
+    public void slowLogKeepsTheNewest() {
+        Tracer tracer = new Tracer(0, 3);
+        for (int i = 0; i < 5; i++) {
+            tracer.finish(new Trace("GET", "/request-" + i), 200);
+        }
+
+        List<String> paths = tracer.getSlowLog().getEntries(10).stream()
+                .map(SlowRequest::getPath)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("/request-4", "/request-3", "/request-2"), paths);
+        assertEquals(Collections.singletonList("/request-4"), tracer.getSlowLog().getEntries(1).stream()
+                .map(SlowRequest::getPath)
+                .collect(Collectors.toList()));
+
+        tracer.getSlowLog().clear();
+        assertTrue(tracer.getSlowLog().getEntries(10).isEmpty());
+    }
+
+}
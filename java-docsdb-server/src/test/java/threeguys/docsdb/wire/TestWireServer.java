@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Three Guys Labs, LLC.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package threeguys.docsdb.wire;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import threeguys.docsdb.Database;
+import threeguys.docsdb.DatabaseException;
+import threeguys.docsdb.admission.AdmissionControl;
+import threeguys.docsdb.api.NamespaceQuota;
+import threeguys.docsdb.async.BatchingAsyncDatabase;
+import threeguys.docsdb.async.DirectAsyncDatabase;
+import threeguys.docsdb.impl.rocksdb.RocksDbDatabaseImpl;
+import threeguys.docsdb.ingest.BufferPool;
+import threeguys.docsdb.ingest.DocumentReader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static threeguys.docsdb.Database.bytes;
+
+public class TestWireServer {
+
+    private static DocumentReader documents() {
+        return new DocumentReader(new BufferPool(4096, 1 << 16, 1 << 20, 1 << 24), 1 << 16, true);
+    }
+
+    private static int status(CompletableFuture<?> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertTrue(e.getCause() instanceof WireException, e.getCause().toString());
+        return ((WireException) e.getCause()).getStatus();
+    }
+
+    @Test
+    public void operations(@TempDir Path tempDir) throws DatabaseException, IOException {
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 2, 64).start();
+             WireServer server = new WireServer(0, async, AdmissionControl.unlimited(), documents()).start();
+             WireClient client = new WireClient("localhost", server.getPort())) {
+
+            assertNull(client.get("wire-ns", "missing").join());
+
+            client.put("wire-ns", "a", bytes("{\"a\":1}")).join();
+            client.put("wire-ns", "b", bytes("[2]")).join();
+            assertArrayEquals(bytes("{\"a\":1}"), client.get("wire-ns", "a").join());
+            assertArrayEquals(bytes("{\"a\":1}"), db.get("wire-ns", "a"));
+
+            Map<String, byte []> found = client.multiGet("wire-ns", Arrays.asList("b", "missing", "a")).join();
+            assertEquals(Arrays.asList("b", "a"), new ArrayList<>(found.keySet()));
+            assertArrayEquals(bytes("[2]"), found.get("b"));
+
+            client.delete("wire-ns", "a").join();
+            assertNull(client.get("wire-ns", "a").join());
+
+            // Same document rules as the REST API
+            assertEquals(400, status(client.put("wire-ns", "broken", bytes("{\"a\":"))));
+            String large = "\"" + String.join("", Collections.nCopies(1 << 16, "x")) + "\"";
+            assertEquals(413, status(client.put("wire-ns", "large", bytes(large))));
+            assertNull(db.get("wire-ns", "broken"));
+        }
+    }
+
+    @Test
+    public void pipelined(@TempDir Path tempDir) throws DatabaseException, IOException {
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 4, 64).start();
+             WireServer server = new WireServer(0, async, AdmissionControl.unlimited(), documents()).start();
+             WireClient client = new WireClient("localhost", server.getPort())) {
+
+            // More than the server lets a connection have in flight, so reading pauses and resumes
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                writes.add(client.put("pipelined", "key-" + (i % 100), bytes("{\"n\":" + i + "}")));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+
+            // Operations on a key are applied in the order they were sent
+            assertArrayEquals(bytes("{\"n\":4999}"), client.get("pipelined", "key-99").join());
+            assertArrayEquals(bytes("{\"n\":4900}"), client.get("pipelined", "key-0").join());
+        }
+    }
+
+    @Test
+    public void throttled(@TempDir Path tempDir) throws DatabaseException, IOException {
+        AdmissionControl admission = AdmissionControl.unlimited();
+        admission.setQuota("limited", new NamespaceQuota(1, 0));
+
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             WireServer server = new WireServer(0, new DirectAsyncDatabase(db), admission, documents()).start();
+             WireClient client = new WireClient("localhost", server.getPort())) {
+            client.put("limited", "key", bytes("{}")).join();
+            assertEquals(429, status(client.get("limited", "key")));
+        }
+    }
+
+    @Test
+    public void readBufferShrinksAfterLargeFrames(@TempDir Path tempDir) throws DatabaseException, IOException {
+        int large = WireServer.READ_BUFFER_BYTES * 4;
+
+        // Holding the start of the next small frame
+        ByteBuffer grown = ByteBuffer.allocate(large).putInt(20).putInt(7);
+        ByteBuffer shrunk = WireServer.shrink(grown);
+        assertEquals(WireServer.READ_BUFFER_BYTES, shrunk.capacity());
+        assertEquals(8, shrunk.position());
+        assertEquals(7, shrunk.getInt(4));
+
+        // Kept while a large frame is still being received
+        ByteBuffer receiving = ByteBuffer.allocate(large).putInt(large - 4).putInt(7);
+        assertSame(receiving, WireServer.shrink(receiving));
+
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             BatchingAsyncDatabase async = new BatchingAsyncDatabase(db, 2, 64).start();
+             WireServer server = new WireServer(0, async, AdmissionControl.unlimited(), documents()).start();
+             WireClient client = new WireClient("localhost", server.getPort())) {
+
+            // As large as the reader accepts, which with its header is more than the read buffer holds
+            StringBuilder document = new StringBuilder("\"");
+            while (document.length() < (1 << 16) - 1) {
+                document.append('x');
+            }
+            document.append('"');
+            client.put("wire-ns", "large", bytes(document.toString())).join();
+            client.put("wire-ns", "small", bytes("{}")).join();
+            assertArrayEquals(bytes(document.toString()), client.get("wire-ns", "large").join());
+            assertArrayEquals(bytes("{}"), client.get("wire-ns", "small").join());
+        }
+    }
+
+    @Test
+    public void stringPastTheEndOfTheFrame(@TempDir Path tempDir) throws DatabaseException, IOException {
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             WireServer server = new WireServer(0, new DirectAsyncDatabase(db), AdmissionControl.unlimited(), documents()).start();
+             Socket socket = new Socket("localhost", server.getPort())) {
+            // A namespace that claims 100 bytes when the frame only has 3 left
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(4 + 1 + 2 + 3);
+            out.writeInt(42);
+            out.writeByte(Protocol.GET);
+            out.writeShort(100);
+            out.write(bytes("abc"));
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            in.readInt();
+            assertEquals(42, in.readInt());
+            assertEquals(Protocol.BAD_REQUEST, in.readShort());
+        }
+    }
+
+    @Test
+    public void oversizedFrameClosesTheConnection(@TempDir Path tempDir) throws DatabaseException, IOException {
+        try (Database db = RocksDbDatabaseImpl.openDatabase(tempDir.toString());
+             WireServer server = new WireServer(0, new DirectAsyncDatabase(db), AdmissionControl.unlimited(), documents()).start();
+             Socket socket = new Socket("localhost", server.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+}